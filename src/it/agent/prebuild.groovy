@@ -0,0 +1,63 @@
+/*
+ * Compiles the classes of src/agent/java to target/classes, and runs them
+ * with a jacoco agent in the output mode tcpserver. The agent keeps running
+ * until the verify script stops it, or the build ends.
+ *
+ * A second server socket accepts connections without ever answering, to
+ * check the agent timeout.
+ */
+
+import javax.tools.ToolProvider
+
+def classes = new File(basedir, "target/classes")
+classes.mkdirs()
+
+def sources = []
+new File(basedir, "src/agent/java").eachFileRecurse(groovy.io.FileType.FILES) { sources << it.path }
+
+// the agent of the tested Jacoco version can't instrument newer class files
+def compiler = ToolProvider.systemJavaCompiler
+assert compiler.run(null, null, null, (["-g", "-source", "1.7", "-target", "1.7", "-d", classes.path] + sources) as String[]) == 0
+
+def agentJar = null
+new File(localRepositoryPath, "org/jacoco/org.jacoco.agent").eachFileRecurse(groovy.io.FileType.FILES) {
+	if (it.name.endsWith("-runtime.jar")) {
+		agentJar = it
+	}
+}
+assert agentJar != null : "Missing the jacoco agent in ${localRepositoryPath}"
+
+def freePort = {
+	def socket = new ServerSocket(0, 0, InetAddress.loopbackAddress)
+	try {
+		return socket.localPort
+	} finally {
+		socket.close()
+	}
+}
+
+def agentPort = freePort()
+def java = new File(System.getProperty("java.home"), "bin/java").path
+def process = new ProcessBuilder(java,
+		"-javaagent:${agentJar}=output=tcpserver,address=127.0.0.1,port=${agentPort},includes=foo.*",
+		"-cp", classes.path, "foo.bar.Main")
+		.redirectErrorStream(true)
+		.start()
+context.agent = process
+
+def reader = new BufferedReader(new InputStreamReader(process.inputStream))
+def line
+while ((line = reader.readLine()) != null && line != "ready") {
+	println line
+}
+assert line == "ready" : "The agent process ended before it was ready"
+
+// not accepting connections, the backlog still completes them
+def silent = new ServerSocket(0, 10, InetAddress.loopbackAddress)
+context.silent = silent
+
+def config = new File(basedir, ".mvn/maven.config")
+config.parentFile.mkdirs()
+config.text = "-Dit.agentPort=${agentPort}\n-Dit.silentPort=${silent.localPort}\n"
+
+return true
@@ -0,0 +1,7 @@
+package foo.bar;
+
+public class Baz {
+	public void doStuff() {
+		System.out.println("Did stuff");
+	}
+}
@@ -0,0 +1,12 @@
+package foo.bar;
+
+public class Main {
+	public static void main(final String[] args) throws Exception {
+		new Baz().doStuff();
+		System.out.println("ready");
+		System.out.flush();
+		// keep the agent running until the build closes the input
+		while (System.in.read() >= 0) {
+		}
+	}
+}
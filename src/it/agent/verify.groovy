@@ -0,0 +1,24 @@
+/*
+ * Checks that the report contains the coverage dumped from the agent, and
+ * that the second build failed waiting for the silent agent.
+ */
+
+context.agent?.destroy()
+context.silent?.close()
+
+def slurper = new XmlSlurper();
+slurper.setFeature('http://apache.org/xml/features/disallow-doctype-decl', false);
+slurper.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+
+def report = slurper.parse(new File(basedir, "target/jacoco.xml"))
+
+def baz = report.'**'.find { node -> node.name() == 'class' && node.@name == 'foo/bar/Baz' }
+assert baz != null : "Missing class foo/bar/Baz"
+
+def covered = baz.counter.find { node -> node.@type == 'METHOD' }.@covered.toInteger()
+assert covered > 0 : "No coverage dumped from the agent"
+
+def log = new File(basedir, "build.log").text
+assert log.contains("java.net.SocketTimeoutException") : "The silent agent didn't time out"
+
+return true
@@ -0,0 +1,7 @@
+package foo.qux;
+
+public class Quux {
+	public void doOtherStuff() {
+		System.out.println("Did other stuff");
+	}
+}
@@ -0,0 +1,7 @@
+package doo.local.stuff;
+
+public class DontForgetMe {
+	public static void callMe() {
+		System.out.format("Don't forget me");
+	}
+}
\ No newline at end of file
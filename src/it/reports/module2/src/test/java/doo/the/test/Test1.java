@@ -0,0 +1,9 @@
+package doo.the.test;
+
+public class Test1 {
+    @org.junit.Test
+    public void test1() {
+        doo.local.stuff.DontForgetMe.callMe();
+        new foo.bar.Baz().doStuff();
+    }
+}
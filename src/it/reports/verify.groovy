@@ -0,0 +1,121 @@
+/*
+ * Checks the reports of the last module, which include the dependency, and
+ * the log of both invocations:
+ *
+ *   the LCOV and Cobertura reports,
+ *   the sharded reports, one report per bundle and, for bundles with more than
+ *   one class, one report per package,
+ *   the HTML report rendered by multiple threads, which must be the same as
+ *   the one rendered by a single thread,
+ *   the check, which fails the first invocation with the violated rule, and
+ *   only warns about it in the second one.
+ */
+
+import groovy.json.JsonSlurper
+
+def target = new File(basedir, "module2/target")
+
+def slurper = new XmlSlurper();
+slurper.setFeature('http://apache.org/xml/features/disallow-doctype-decl', false);
+slurper.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+
+// LCOV
+
+def lcov = new File(target, "lcov.info")
+assert lcov.isFile() : "Missing LCOV report"
+
+def records = lcov.text.split("end_of_record\n")*.trim().findAll { it }
+assert records.size() > 0 : "No LCOV records"
+
+// the source files of the dependency are resolved in its source roots
+def baz = records.find { it.contains("/foo/bar/Baz.java\n") }
+assert baz != null : "Missing LCOV record of Baz.java"
+def sf = baz.readLines().find { it.startsWith("SF:") }.substring(3)
+assert new File(sf).isFile() : "Unresolved source file: ${sf}"
+def hit = baz.readLines().find { it.startsWith("LH:") }.substring(3) as int
+assert hit > 0 : "Missing line coverage of Baz.java"
+
+// Cobertura
+
+def cobertura = new File(target, "cobertura.xml")
+assert cobertura.isFile() : "Missing Cobertura report"
+
+def coberturaClasses = slurper.parse(cobertura).'**'.findAll { node -> node.name() == 'class' }
+assert coberturaClasses.size() > 0 : "No Cobertura classes"
+assert coberturaClasses.find { it.@name == 'foo.bar.Baz' } != null : "Missing Cobertura class foo.bar.Baz"
+
+// shards
+
+def checkShards(def slurper, File directory, List expected) {
+    def index = new File(directory, "index.json")
+    assert index.isFile() : "Missing index: ${index}"
+
+    def shards = new JsonSlurper().parse(index).shards
+    assert shards*.file.sort() == expected.sort() : "Unexpected shards: ${shards*.file}"
+
+    shards.each { shard ->
+        def file = new File(directory, shard.file)
+        assert file.isFile() : "Missing shard: ${file}"
+
+        def report = slurper.parse(file)
+        def classes = report.'**'.findAll { node -> node.name() == 'class' }.size()
+        assert classes == shard.counters.CLASS.covered + shard.counters.CLASS.missed : "Class counters of ${shard.file} don't match its report"
+    }
+
+    return shards
+}
+
+def bundles = checkShards(slurper, new File(target, "shards-bundle"), ["reports-module1.xml", "reports-module2.xml"])
+assert bundles.every { it.package == null }
+def module1 = bundles.find { it.bundle == "reports-module1" }
+assert module1.counters.CLASS.covered == 1 : "Unexpected coverage of reports-module1: ${module1.counters}"
+assert module1.counters.CLASS.missed == 1 : "Unexpected coverage of reports-module1: ${module1.counters}"
+
+def packages = checkShards(slurper, new File(target, "shards-package"), ["reports-module1/foo.bar.xml", "reports-module1/foo.qux.xml", "reports-module2.xml"])
+assert packages.find { it.package == "foo/bar" }.counters.METHOD.covered > 0 : "Missing coverage of foo/bar"
+assert packages.find { it.package == "foo/qux" }.counters.METHOD.covered == 0 : "Unexpected coverage of foo/qux"
+
+// HTML
+
+def serial = new File(target, "html-serial")
+def parallel = new File(target, "html-parallel")
+
+assert new File(parallel, "reports-module1/foo.bar/Baz.java.html").isFile() : "Missing source page of the dependency"
+
+def files = { File root ->
+    def result = new TreeMap()
+    root.eachFileRecurse(groovy.io.FileType.FILES) { file ->
+        result[root.toPath().relativize(file.toPath()).toString()] = file.bytes.encodeBase64().toString()
+    }
+    return result
+}
+
+def serialFiles = files(serial)
+def parallelFiles = files(parallel)
+
+assert serialFiles.keySet() == parallelFiles.keySet() : "Different pages: ${serialFiles.keySet()} vs ${parallelFiles.keySet()}"
+
+serialFiles.each { name, content ->
+    assert parallelFiles[name] == content : "Different content of ${name}"
+}
+
+// check
+
+def log = new File(basedir, "build.log").text
+
+def violation = "Rule violated for class doo.local.stuff.DontForgetMe"
+
+assert log.contains("[ERROR] " + violation) : "Missing violation error"
+assert log.contains("Coverage checks have not been met: " + violation) : "Missing check failure"
+assert log.contains("BUILD FAILURE") : "First invocation didn't fail"
+
+assert log.contains("[WARNING] " + violation) : "Missing violation warning"
+assert log.contains("BUILD SUCCESS") : "Second invocation didn't succeed"
+
+assert log.indexOf("BUILD FAILURE") < log.indexOf("[WARNING] " + violation) : "Warning logged by the first invocation"
+
+// the dependency is covered by the tests of module2, except for foo.qux.Quux
+assert !log.contains("Rule violated for class foo.bar.Baz") : "Unexpected violation of foo.bar.Baz"
+assert log.contains("[WARNING] Rule violated for class foo.qux.Quux") : "Missing violation of foo.qux.Quux"
+
+return true
@@ -0,0 +1,135 @@
+/*
+ * Generates a reactor of a configurable size, using the system properties:
+ *
+ *   scale.modules  - the number of modules
+ *   scale.packages - the number of packages per module
+ *   scale.classes  - the number of classes per package
+ *
+ * Each module depends on its predecessor, forming a dependency chain through
+ * the whole reactor, and on the module in the middle of the chain before it.
+ * The tests of the last module call code of all modules, so its execution
+ * data matches the classes of the whole reactor.
+ */
+
+def modules = Integer.getInteger("scale.modules", 200)
+def packages = Integer.getInteger("scale.packages", 2)
+def classes = Integer.getInteger("scale.classes", 10)
+
+def moduleName = { i -> String.format("m%04d", i) }
+
+def write = { File file, String content ->
+    file.parentFile.mkdirs()
+    file.setText(content, "UTF-8")
+}
+
+for (int i = 0; i < modules; i++) {
+    def name = moduleName(i)
+    def dir = new File(basedir, name)
+
+    def dependencies = new LinkedHashSet()
+    if (i > 0) {
+        dependencies << moduleName(i - 1)
+        dependencies << moduleName(i.intdiv(2))
+    }
+
+    def pom = new StringBuilder()
+    pom << """<project xmlns="http://maven.apache.org/POM/4.0.0">
+	<modelVersion>4.0.0</modelVersion>
+	<parent>
+		<groupId>de.dentrassi.maven.jacoco</groupId>
+		<artifactId>scale-parent</artifactId>
+		<version>1.0.0-SNAPSHOT</version>
+		<relativePath>..</relativePath>
+	</parent>
+	<artifactId>scale-${name}</artifactId>
+	<dependencies>
+"""
+    for (dep in dependencies) {
+        pom << """		<dependency>
+			<groupId>\${project.groupId}</groupId>
+			<artifactId>scale-${dep}</artifactId>
+			<version>\${project.version}</version>
+		</dependency>
+"""
+    }
+    if (i == modules - 1) {
+        pom << """		<dependency>
+			<groupId>junit</groupId>
+			<artifactId>junit</artifactId>
+			<version>4.11</version>
+			<scope>test</scope>
+		</dependency>
+"""
+    }
+    pom << """	</dependencies>
+</project>
+"""
+    write(new File(dir, "pom.xml"), pom.toString())
+
+    def calls = new StringBuilder()
+    if (i > 0) {
+        calls << "        result += ${moduleName(i - 1)}.Entry.run(value);\n"
+    }
+
+    for (int p = 0; p < packages; p++) {
+        for (int c = 0; c < classes; c++) {
+            write(new File(dir, "src/main/java/${name}/p${p}/C${c}.java"), """package ${name}.p${p};
+
+public class C${c} {
+    public int run(final int value) {
+        if (value > ${c}) {
+            return value * ${c};
+        }
+        return value + ${c};
+    }
+
+    public int unused(final int value) {
+        switch (value) {
+        case 0:
+            return ${p};
+        case 1:
+            return ${c};
+        default:
+            return value;
+        }
+    }
+}
+""")
+            calls << "        result += new ${name}.p${p}.C${c}().run(value);\n"
+        }
+    }
+
+    write(new File(dir, "src/main/java/${name}/Entry.java"), """package ${name};
+
+public class Entry {
+    public static int run(final int value) {
+        int result = 0;
+${calls}        return result;
+    }
+}
+""")
+
+    if (i == modules - 1) {
+        write(new File(dir, "src/test/java/scale/ScaleTest.java"), """package scale;
+
+public class ScaleTest {
+    @org.junit.Test
+    public void test() {
+        ${name}.Entry.run(1);
+    }
+}
+""")
+    }
+}
+
+def moduleList = (0..<modules).collect { "\t\t<module>${moduleName(it)}</module>" }.join("\n")
+def parent = new File(basedir, "pom.xml")
+parent.setText(parent.getText("UTF-8").replace("\t\t<!-- MODULES -->", moduleList), "UTF-8")
+
+def expected = new Properties()
+expected.setProperty("modules", String.valueOf(modules))
+expected.setProperty("lastModule", moduleName(modules - 1))
+expected.setProperty("classes", String.valueOf(modules * (packages * classes + 1)))
+new File(basedir, "scale.properties").withOutputStream { expected.store(it, null) }
+
+return true
@@ -0,0 +1,56 @@
+/*
+ * Checks the report of the last module, which includes all modules of the
+ * reactor, and the time and heap budgets of creating it. The budgets can be
+ * changed using the system properties:
+ *
+ *   scale.timeBudget - the maximum time of all phases, in milliseconds per
+ *                      1000 classes of the report
+ *   scale.heapBudget - the maximum peak heap delta of a phase, in megabytes
+ *
+ * The time budget grows linearly with the size of the reactor, so a quadratic
+ * regression exceeds it. The peak heap delta includes garbage which had not
+ * yet been collected, so the young generation is limited in
+ * invoker.properties, which keeps the figure close to the retained heap.
+ */
+
+import groovy.json.JsonSlurper
+
+def timeBudgetPerClasses = Long.getLong("scale.timeBudget", 4000)
+def heapBudget = Long.getLong("scale.heapBudget", 128) * 1024 * 1024
+
+def expected = new Properties()
+new File(basedir, "scale.properties").withInputStream { expected.load(it) }
+
+def target = new File(basedir, expected.getProperty("lastModule") + "/target")
+
+def slurper = new XmlSlurper();
+slurper.setFeature('http://apache.org/xml/features/disallow-doctype-decl', false);
+slurper.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+
+def report = slurper.parse(new File(target, "jacoco.xml"))
+
+def bundles = report.group.size()
+assert bundles == expected.getProperty("modules") as int : "Unexpected number of bundles: ${bundles}"
+
+def classes = report.'**'.findAll { node -> node.name() == 'class' }.size()
+assert classes == expected.getProperty("classes") as int : "Unexpected number of classes: ${classes}"
+
+def covered = report.counter.find { node -> node.@type == 'METHOD' }.@covered.toInteger()
+assert covered > 0 : "No coverage recorded"
+
+def metrics = new JsonSlurper().parse(new File(target, "jacoco.xml.metrics.json"))
+
+def time = metrics.phases.sum { phase -> phase.timeMillis }
+println "Report of ${bundles} bundles with ${classes} classes created in ${time} ms"
+metrics.phases.each { phase ->
+    println "  ${phase.name}: ${phase.timeMillis} ms, peak heap delta ${phase.peakHeapDelta} bytes"
+}
+
+def timeBudget = timeBudgetPerClasses * classes / 1000
+assert time <= timeBudget : "Creating the report took ${time} ms, exceeding the budget of ${timeBudget} ms"
+
+metrics.phases.each { phase ->
+    assert phase.peakHeapDelta <= heapBudget : "Phase ${phase.name} had a peak heap delta of ${phase.peakHeapDelta} bytes, exceeding the budget of ${heapBudget} bytes"
+}
+
+return true
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfoStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmark loading execution data files. <br>
+ * Reading with the {@link ExecFileReader} is compared to reading a buffered
+ * stream with the {@link ExecutionDataReader} of Jacoco.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ExecutionDataBenchmark {
+
+    @Param({ "1000", "10000", "100000" })
+    public int classes;
+
+    private File directory;
+    private File execFile;
+
+    @Setup
+    public void setup() throws IOException {
+        this.directory = Files.createTempDirectory("jacoco-extras-benchmark").toFile();
+        this.execFile = new File(this.directory, "jacoco.exec");
+        SyntheticData.generate(new File(this.directory, "classes"), "bench", this.classes, this.execFile);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        SyntheticData.delete(this.directory);
+    }
+
+    @Benchmark
+    public ExecutionDataStore loadExecutionData() throws IOException {
+        try (ReportSupport report = new ReportSupport(SyntheticData.silentLog())) {
+            report.loadExecutionData(this.execFile);
+            return report.getExecutionDataStore();
+        }
+    }
+
+    @Benchmark
+    public ExecutionDataStore readStream() throws IOException {
+        final ExecutionDataStore executionData = new ExecutionDataStore();
+        try (InputStream in = new BufferedInputStream(new FileInputStream(this.execFile))) {
+            final ExecutionDataReader reader = new ExecutionDataReader(in);
+            reader.setSessionInfoVisitor(new SessionInfoStore());
+            reader.setExecutionDataVisitor(executionData);
+            reader.read();
+        }
+        return executionData;
+    }
+
+    @Benchmark
+    public ExecutionDataStore readChunked() throws IOException {
+        final ExecutionDataStore executionData = new ExecutionDataStore();
+        final ExecFileReader reader = new ExecFileReader(this.execFile);
+        reader.setSessionInfoVisitor(new SessionInfoStore());
+        reader.setExecutionDataStore(executionData);
+        reader.read();
+        return executionData;
+    }
+}
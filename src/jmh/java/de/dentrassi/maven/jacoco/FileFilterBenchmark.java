@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark scanning class directories.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FileFilterBenchmark {
+
+    @Param({ "1000", "10000" })
+    public int classes;
+
+    private File directory;
+
+    private FileFilter all;
+    private FileFilter filtered;
+
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setup() throws IOException {
+        this.directory = Files.createTempDirectory("jacoco-extras-benchmark").toFile();
+        SyntheticData.generate(this.directory, "bench", this.classes, null);
+
+        this.all = new FileFilter(null, null);
+        this.filtered = new FileFilter(Collections.singletonList("**/p1*/*.class"),
+                Collections.singletonList("**/Class1*.class"));
+
+        this.pool = new ForkJoinPool(4);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        this.pool.shutdown();
+        SyntheticData.delete(this.directory);
+    }
+
+    @Benchmark
+    public List<File> getFiles() throws IOException {
+        return this.all.getFiles(this.directory);
+    }
+
+    @Benchmark
+    public List<File> getFilesFiltered() throws IOException {
+        return this.filtered.getFiles(this.directory);
+    }
+
+    @Benchmark
+    public List<File> getFilesParallel() throws IOException {
+        return this.all.getFiles(this.directory, this.pool);
+    }
+
+    @Benchmark
+    public void visitFiles(final Blackhole blackhole) throws IOException {
+        this.all.visitFiles(this.directory, new FileFilter.Visitor() {
+
+            @Override
+            public void visitFile(final String name, final File file) {
+                blackhole.consume(file);
+            }
+        });
+    }
+}
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.jacoco.report.IReportVisitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmark pretty printing an XML report.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PrettyPrintBenchmark {
+
+    @Param({ "1000", "10000" })
+    public int classes;
+
+    private byte[] report;
+
+    @Setup
+    public void setup() throws IOException {
+        final File directory = Files.createTempDirectory("jacoco-extras-benchmark").toFile();
+        try {
+            final File classesDir = new File(directory, "classes");
+            final File execFile = new File(directory, "jacoco.exec");
+            final File xmlFile = new File(directory, "jacoco.xml");
+            SyntheticData.generate(classesDir, "bench", this.classes, execFile);
+
+            try (ReportSupport support = new ReportSupport(SyntheticData.silentLog())) {
+                support.loadExecutionData(execFile);
+                support.addXmlFormatter(xmlFile, "UTF-8");
+                final IReportVisitor visitor = support.initRootVisitor();
+                support.processProject(visitor, SyntheticData.createProject("bench", classesDir), null, null);
+                visitor.visitEnd();
+            }
+
+            this.report = Files.readAllBytes(xmlFile.toPath());
+        } finally {
+            SyntheticData.delete(directory);
+        }
+    }
+
+    @Benchmark
+    public long prettyPrint() throws IOException {
+        final CountingOutputStream target = new CountingOutputStream();
+        try (OutputStream out = new PrettyPrintOutputStream(target, "UTF-8",
+                "-//JACOCO//DTD Report 1.0//EN", "report.dtd")) {
+            out.write(this.report);
+        }
+        return target.count;
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(final int b) {
+            this.count++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            this.count += len;
+        }
+    }
+}
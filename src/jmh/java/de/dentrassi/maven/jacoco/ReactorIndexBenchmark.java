@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark resolving the reactor dependencies of all modules of a reactor,
+ * as done by the mojo executions of a full build.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ReactorIndexBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    public int modules;
+
+    @Param({ "true", "false" })
+    public boolean transitive;
+
+    private List<MavenProject> reactor;
+
+    private final Set<String> scopes = new HashSet<>(Arrays.asList("compile", "runtime"));
+
+    private final Log log = SyntheticData.silentLog();
+
+    @Setup
+    public void setup() {
+        this.reactor = SyntheticData.createReactor(this.modules);
+    }
+
+    @Benchmark
+    public void findDependencies(final Blackhole blackhole) {
+        final ReactorIndex index = new ReactorIndex(this.reactor);
+        for (final MavenProject project : this.reactor) {
+            blackhole.consume(index.findDependencies(project, this.scopes, this.transitive, this.log));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.project.MavenProject;
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.report.IReportGroupVisitor;
+import org.jacoco.report.ISourceFileLocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark analyzing the classes of a project.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ReportBenchmark {
+
+    @Param({ "1000", "10000" })
+    public int classes;
+
+    @Param({ "1", "4" })
+    public int threads;
+
+    private File directory;
+    private MavenProject project;
+
+    private ReportSupport report;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.directory = Files.createTempDirectory("jacoco-extras-benchmark").toFile();
+
+        final File classes = new File(this.directory, "classes");
+        final File execFile = new File(this.directory, "jacoco.exec");
+        SyntheticData.generate(classes, "bench", this.classes, execFile);
+
+        this.project = SyntheticData.createProject("bench", classes);
+
+        this.report = new ReportSupport(SyntheticData.silentLog());
+        this.report.setThreads(this.threads);
+        this.report.loadExecutionData(execFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        this.report.close();
+        SyntheticData.delete(this.directory);
+    }
+
+    @Benchmark
+    public void processProject(final Blackhole blackhole) throws IOException {
+        this.report.processProject(new IReportGroupVisitor() {
+
+            @Override
+            public void visitBundle(final IBundleCoverage bundle, final ISourceFileLocator locator) {
+                blackhole.consume(bundle);
+            }
+
+            @Override
+            public IReportGroupVisitor visitGroup(final String name) {
+                return this;
+            }
+        }, this.project, null, null);
+    }
+}
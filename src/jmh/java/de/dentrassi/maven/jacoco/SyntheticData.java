@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.monitor.logging.DefaultLog;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfo;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Generator of synthetic input data for the benchmarks. <br>
+ * Classes are generated with straight line methods only, so that each method
+ * has exactly one probe. Every second method is marked as executed in the
+ * execution data.
+ */
+final class SyntheticData {
+
+    private static final int METHODS = 10;
+
+    private SyntheticData() {
+    }
+
+    /**
+     * Create a log which discards all messages.
+     *
+     * @return a new log instance
+     */
+    public static Log silentLog() {
+        return new DefaultLog(new ConsoleLogger(Logger.LEVEL_DISABLED, "benchmark"));
+    }
+
+    /**
+     * Generate a directory of class files.
+     *
+     * @param directory
+     *            the target directory
+     * @param prefix
+     *            the package prefix of the classes
+     * @param classes
+     *            the number of classes to generate
+     * @param execFile
+     *            the execution data file to write, may be {@code null}
+     * @throws IOException
+     *             if writing fails
+     */
+    public static void generate(final File directory, final String prefix, final int classes, final File execFile)
+            throws IOException {
+
+        final List<ExecutionData> data = new ArrayList<>(classes);
+
+        for (int i = 0; i < classes; i++) {
+            final String name = String.format("%s/p%s/Class%s", prefix, Integer.valueOf(i / 100), Integer.valueOf(i));
+            final byte[] bytes = createClass(name);
+
+            final File file = new File(directory, name + ".class");
+            file.getParentFile().mkdirs();
+            Files.write(file.toPath(), bytes);
+
+            final boolean[] probes = new boolean[METHODS];
+            for (int j = 0; j < probes.length; j += 2) {
+                probes[j] = true;
+            }
+            data.add(new ExecutionData(Crc64.classId(bytes), name, probes));
+        }
+
+        if (execFile != null) {
+            writeExecutionData(execFile, data);
+        }
+    }
+
+    private static void writeExecutionData(final File execFile, final List<ExecutionData> data) throws IOException {
+        execFile.getParentFile().mkdirs();
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(execFile))) {
+            final ExecutionDataWriter writer = new ExecutionDataWriter(out);
+            writer.visitSessionInfo(new SessionInfo("benchmark", 0, 0));
+            for (final ExecutionData entry : data) {
+                writer.visitClassExecution(entry);
+            }
+        }
+    }
+
+    private static byte[] createClass(final String name) {
+        final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name, null, "java/lang/Object", null);
+        cw.visitSource(name.substring(name.lastIndexOf('/') + 1) + ".java", null);
+
+        for (int i = 0; i < METHODS; i++) {
+            final MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "method" + i, "()I",
+                    null, null);
+            mv.visitCode();
+            final Label label = new Label();
+            mv.visitLabel(label);
+            mv.visitLineNumber(i + 1, label);
+            mv.visitLdcInsn(Integer.valueOf(i));
+            mv.visitInsn(Opcodes.IRETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * Create a project using the given output directory.
+     *
+     * @param artifactId
+     *            the artifact ID of the project
+     * @param outputDirectory
+     *            the directory of the class files
+     * @return the new project
+     */
+    public static MavenProject createProject(final String artifactId, final File outputDirectory) {
+        final Model model = new Model();
+        model.setGroupId("benchmark");
+        model.setArtifactId(artifactId);
+        model.setVersion("1.0.0");
+
+        final MavenProject project = new MavenProject(model);
+        project.getBuild().setOutputDirectory(outputDirectory.getAbsolutePath());
+        project.setFile(new File(outputDirectory.getParentFile(), "pom.xml"));
+        return project;
+    }
+
+    /**
+     * Create a reactor of projects. <br>
+     * Each module depends on its two predecessors, so the reactor has a deep
+     * and overlapping dependency graph.
+     *
+     * @param modules
+     *            the number of modules
+     * @return the projects of the reactor
+     */
+    public static List<MavenProject> createReactor(final int modules) {
+        final List<MavenProject> result = new ArrayList<>(modules);
+        for (int i = 0; i < modules; i++) {
+            final MavenProject project = createProject("module" + i, new File("target/classes"));
+            for (int j = Math.max(0, i - 2); j < i; j++) {
+                final Dependency dependency = new Dependency();
+                dependency.setGroupId("benchmark");
+                dependency.setArtifactId("module" + j);
+                dependency.setVersion("1.0.0");
+                dependency.setScope("compile");
+                project.getModel().addDependency(dependency);
+            }
+            result.add(project);
+        }
+        return result;
+    }
+
+    /**
+     * Delete a directory recursively.
+     *
+     * @param directory
+     *            the directory to delete
+     * @throws IOException
+     *             if deleting fails
+     */
+    public static void delete(final File directory) throws IOException {
+        if (!directory.exists()) {
+            return;
+        }
+        Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,598 @@
+/*******************************************************************************
+ * Copyright (c) 2017, 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import static java.lang.String.format;
+import static org.apache.maven.artifact.Artifact.SCOPE_COMPILE;
+import static org.apache.maven.artifact.Artifact.SCOPE_PROVIDED;
+import static org.apache.maven.artifact.Artifact.SCOPE_RUNTIME;
+import static org.apache.maven.artifact.Artifact.SCOPE_TEST;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.FileUtils;
+import org.jacoco.report.IReportGroupVisitor;
+import org.jacoco.report.IReportVisitor;
+
+/**
+ * Common base of mojos creating reports including dependencies.
+ */
+public abstract class AbstractReportMojo extends AbstractMojo {
+
+    protected final static String PROP_PREFIX = "jacoco.extras.";
+
+    /**
+     * Allows to skip the execution
+     */
+    @Parameter(property = PROP_PREFIX + "skip", defaultValue = "false")
+    protected boolean skip;
+
+    /**
+     * The encoding of the source files
+     */
+    @Parameter(property = "project.build.sourceEncoding", defaultValue = "UTF-8")
+    protected String sourceEncoding;
+
+    /**
+     * Include patterns. The default is to include everything.
+     */
+    @Parameter
+    protected List<String> includes;
+
+    /**
+     * Exclude patterns. The default is to exclude nothing.
+     */
+    @Parameter
+    protected List<String> excludes;
+
+    /**
+     * The jacoco execution data <br>
+     * If this file doesn't exist, execution of this plugin will be skipped.
+     * The path may contain the wildcards <code>*</code> and <code>?</code>,
+     * and <code>**</code> for matching any number of directories, in which
+     * case all matching files will be loaded and merged. The
+     * <code>xml-aggregate</code> goal uses <code>execFileName</code> instead.
+     */
+    @Parameter(property = PROP_PREFIX
+            + "execFile", defaultValue = "${project.build.directory}/jacoco.exec", required = true)
+    protected File execFile;
+
+    /**
+     * Additional jacoco execution data files <br>
+     * All files are merged with the content of {@link #execFile}. Like
+     * {@link #execFile}, the paths may contain wildcards. If more than one
+     * thread is configured, the files will be read in parallel.
+     *
+     * @since 0.1.7
+     */
+    @Parameter(property = PROP_PREFIX + "execFiles")
+    protected List<File> execFiles;
+
+    @Parameter(property = "project", readonly = true)
+    protected MavenProject project;
+
+    @Parameter(property = "reactorProjects", readonly = true)
+    protected List<MavenProject> reactorProjects;
+
+    @Parameter(property = "session", readonly = true)
+    protected MavenSession session;
+
+    @Parameter(property = "plugin", readonly = true)
+    protected PluginDescriptor plugin;
+
+    /**
+     * If the XML file should be pretty printed. <br>
+     * The XML is indented while it is being written, using the source encoding
+     * as output encoding.
+     *
+     * @since 0.1.2
+     */
+    @Parameter(property = PROP_PREFIX + "pretty", defaultValue = "true")
+    protected boolean pretty = true;
+
+    /**
+     * The compression of the XML file. <br>
+     * Possible values are <code>NONE</code> and <code>GZIP</code>. The file is
+     * compressed while it is being written. When compressed, the suffix
+     * <code>.gz</code> is appended to the file name, unless it is already
+     * present.
+     *
+     * @since 0.1.7
+     */
+    @Parameter(property = PROP_PREFIX + "compression", defaultValue = "NONE")
+    protected Compression compression = Compression.NONE;
+
+    /**
+     * Scopes to consider for dependencies.
+     */
+    @Parameter(property = PROP_PREFIX + "scopes", defaultValue = "compile,runtime,provided,test")
+    protected String[] scopes = new String[] { SCOPE_COMPILE, SCOPE_RUNTIME, SCOPE_PROVIDED, SCOPE_TEST };
+
+    /**
+     * Process transient dependencies.
+     */
+    @Parameter(property = PROP_PREFIX + "transientDependencies", defaultValue = "true")
+    protected boolean transientDependencies = true;
+
+    /**
+     * Number of threads used for analyzing class files. <br>
+     * If more than one thread is used, dependencies, and the class files of
+     * large dependencies, will be analyzed in parallel. A value of zero or
+     * less will use the number of available processors.
+     *
+     * @since 0.1.7
+     */
+    @Parameter(property = PROP_PREFIX + "threads", defaultValue = "1")
+    protected int threads = 1;
+
+    /**
+     * Maximum size, in megabytes, of the cache of analyzed classes. <br>
+     * The cache is shared by all executions of this plugin in the same build.
+     * It keeps the coverage of a class for the execution data it was analyzed
+     * with, not the structure of the class. So it only saves the analysis of
+     * classes which have the same execution data in the reports of several
+     * modules, most notably the classes of dependencies which are not executed
+     * by the tests of a module. The size is estimated and is set by the first
+     * execution in the build. A value of zero or less disables the cache.
+     * <p>
+     * The cache is disabled by default, except for the
+     * <code>xml-aggregate</code> goal, which uses 256 megabytes.
+     * </p>
+     *
+     * @since 0.1.7
+     */
+    @Parameter(property = PROP_PREFIX + "cacheSize")
+    protected Integer cacheSize;
+
+    /**
+     * Only load the execution data of classes which are part of the report.
+     * <br>
+     * Execution data files may contain data of many more classes, like those
+     * of third party dependencies. Enabling this option reduces the amount of
+     * memory required for large execution data files. Classes are matched by
+     * the path of their class files.
+     *
+     * @since 0.1.7
+     */
+    @Parameter(property = PROP_PREFIX + "filterExecutionData", defaultValue = "false")
+    protected boolean filterExecutionData;
+
+    /**
+     * Analyze and write bundles package by package. <br>
+     * By default the coverage of a whole bundle is created in memory before
+     * it is written. With streaming enabled, the classes of each package are
+     * analyzed while the report is being written, and are discarded once the
+     * package is written. So the memory required depends on the largest
+     * package instead of the largest module. Packages are written ordered by
+     * name. In this mode only one of the formats <code>XML</code>,
+     * <code>XML_SHARDS</code>, <code>LCOV</code> and <code>COBERTURA</code>
+     * can be written, optionally together with <code>SUMMARY</code>.
+     *
+     * @since 0.1.7
+     */
+    @Parameter(property = PROP_PREFIX + "streaming", defaultValue = "false")
+    protected boolean streaming;
+
+    /**
+     * A file listing changed classes. If set, only those classes are analyzed,
+     * creating a reduced report. <br>
+     * The file contains one entry per line, either the path of a source file,
+     * the path of a class file relative to the output directory, or a class
+     * name. Relative source paths are resolved against the directory the
+     * build was started in, so the output of <code>git diff --name-only</code>
+     * can be used. Nested and inner classes are included with their top level
+     * class. Modules containing none of the classes are left out of the
+     * report.
+     *
+     * @since 0.1.7
+     */
+    @Parameter(property = PROP_PREFIX + "changedClassesFile")
+    protected File changedClassesFile;
+
+    private ChangedClasses changedClasses;
+
+    private boolean analysisCacheCreated;
+    private AnalysisCache analysisCache;
+
+    /**
+     * Keep the coverage of analyzed classes in a cache on disk, which is
+     * shared between builds. <br>
+     * Classes which did not change, and for which the execution data did not
+     * change, are not analyzed again by later builds. The cache can be used by
+     * multiple builds at the same time.
+     *
+     * @since 0.1.7
+     */
+    @Parameter(property = PROP_PREFIX + "persistentCache", defaultValue = "false")
+    protected boolean persistentCache;
+
+    /**
+     * The directory of the persistent cache.
+     *
+     * @since 0.1.7
+     */
+    @Parameter(property = PROP_PREFIX
+            + "persistentCacheDirectory", defaultValue = "${settings.localRepository}/.cache/jacoco-extras")
+    protected File persistentCacheDirectory;
+
+    /**
+     * Maximum size, in megabytes, of the persistent cache. <br>
+     * When the cache grows beyond this size, the least recently used entries
+     * are deleted. A value of zero or less disables the persistent cache.
+     *
+     * @since 0.1.7
+     */
+    @Parameter(property = PROP_PREFIX + "persistentCacheSize", defaultValue = "512")
+    protected int persistentCacheSize = 512;
+
+    public void setThreads(final int threads) {
+        this.threads = threads;
+    }
+
+    public void setCacheSize(final int cacheSize) {
+        this.cacheSize = Integer.valueOf(cacheSize);
+    }
+
+    public void setFilterExecutionData(final boolean filterExecutionData) {
+        this.filterExecutionData = filterExecutionData;
+    }
+
+    public void setStreaming(final boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    public void setChangedClassesFile(final File changedClassesFile) {
+        this.changedClassesFile = changedClassesFile;
+    }
+
+    public void setPersistentCache(final boolean persistentCache) {
+        this.persistentCache = persistentCache;
+    }
+
+    public void setPersistentCacheDirectory(final File persistentCacheDirectory) {
+        this.persistentCacheDirectory = persistentCacheDirectory;
+    }
+
+    public void setPersistentCacheSize(final int persistentCacheSize) {
+        this.persistentCacheSize = persistentCacheSize;
+    }
+
+    public void setTransientDependencies(final boolean transientDependencies) {
+        this.transientDependencies = transientDependencies;
+    }
+
+    public void setScopes(final String[] scopes) {
+        this.scopes = scopes;
+    }
+
+    public void setPretty(final boolean pretty) {
+        this.pretty = pretty;
+    }
+
+    public void setCompression(final Compression compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * Get the size of the analysis cache, if the <code>cacheSize</code> is not
+     * configured.
+     *
+     * @return the size, in megabytes
+     */
+    protected int getDefaultCacheSize() {
+        return 0;
+    }
+
+    /**
+     * Get the analysis cache of the build session. <br>
+     * The same instance is returned for all reports of this execution, also
+     * when only the persistent cache is used, so that its statistics cover all
+     * of them.
+     *
+     * @return the cache, or {@code null} if caching is disabled
+     */
+    protected AnalysisCache getAnalysisCache() {
+        if (!this.analysisCacheCreated) {
+            this.analysisCache = createAnalysisCache();
+            this.analysisCacheCreated = true;
+        }
+        return this.analysisCache;
+    }
+
+    private AnalysisCache createAnalysisCache() {
+        final PersistentAnalysisCache persistent = getPersistentAnalysisCache();
+        final int size = this.cacheSize != null ? this.cacheSize.intValue() : getDefaultCacheSize();
+        if (size <= 0) {
+            // use the persistent cache only
+            return persistent != null ? new AnalysisCache(0, persistent) : null;
+        }
+        return AnalysisCache.forSession(this.session, size * 1024L * 1024L, persistent);
+    }
+
+    private PersistentAnalysisCache getPersistentAnalysisCache() {
+        if (!this.persistentCache || this.persistentCacheDirectory == null || this.persistentCacheSize <= 0) {
+            return null;
+        }
+        return PersistentAnalysisCache.forSession(this.session, this.persistentCacheDirectory,
+                this.persistentCacheSize * 1024L * 1024L, getLog());
+    }
+
+    /**
+     * Create a new report support instance, configured with the threads and
+     * the cache of this mojo. Execution data files and the index of source
+     * files are shared with other executions of the build session.
+     *
+     * @return a new instance, which must be closed
+     */
+    protected ReportSupport createReportSupport() {
+        final ReportSupport report = new ReportSupport(getLog());
+        report.setThreads(this.threads);
+        report.setAnalysisCache(getAnalysisCache());
+        report.setSharedExecutionData(SharedExecutionData.forSession(this.session));
+        report.setSourceFileIndex(SourceFileIndex.forSession(this.session));
+        report.setStreaming(this.streaming);
+        return report;
+    }
+
+    /**
+     * Restrict the report to the changed classes, if configured. <br>
+     * This must be called before filtering and loading the execution data.
+     *
+     * @param report
+     *            the report support to configure
+     * @param projects
+     *            the projects of the report
+     * @throws IOException
+     *             if the list of changed classes cannot be read
+     */
+    protected void applyChangedClasses(final ReportSupport report, final List<MavenProject> projects)
+            throws IOException {
+        if (this.changedClassesFile == null) {
+            return;
+        }
+
+        if (this.changedClasses == null) {
+            this.changedClasses = ChangedClasses.read(this.changedClassesFile,
+                    new File(this.session.getExecutionRootDirectory()));
+        }
+
+        final Set<String> names = this.changedClasses.getClassNames(projects);
+        getLog().info(format("Only analyzing %s changed classes", Integer.valueOf(names.size())));
+        report.setChangedClasses(names);
+    }
+
+    /**
+     * Write an XML report of a project and its dependencies. <br>
+     * The execution data must already be loaded.
+     *
+     * @param report
+     *            the report support to use
+     * @param xmlFile
+     *            the XML file to write
+     * @param projects
+     *            the project and its dependencies
+     * @throws IOException
+     *             if creating the report fails
+     */
+    protected void writeXmlReport(final ReportSupport report, final File xmlFile, final List<MavenProject> projects)
+            throws IOException {
+        addXmlFormatter(report, xmlFile);
+        writeReport(report, projects);
+    }
+
+    /**
+     * Add an XML formatter, pretty printing if configured.
+     *
+     * @param report
+     *            the report support to add the formatter to
+     * @param xmlFile
+     *            the XML file to write
+     * @throws IOException
+     *             if the file cannot be created
+     */
+    protected void addXmlFormatter(final ReportSupport report, final File xmlFile) throws IOException {
+        final File file = getXmlOutputFile(xmlFile);
+        file.getParentFile().mkdirs();
+
+        if (this.pretty) {
+            report.addPrettyXmlFormatter(file, this.sourceEncoding, getCompression());
+        } else {
+            report.addXmlFormatter(file, "UTF-8", getCompression());
+        }
+    }
+
+    /**
+     * Add a formatter writing one XML report per bundle, pretty printing and
+     * compressing like the XML report.
+     *
+     * @param report
+     *            the report support to add the formatter to
+     * @param directory
+     *            the directory to write the reports to
+     * @param maxClasses
+     *            bundles with more classes are split into one report per
+     *            package, zero or less never splits bundles
+     * @throws IOException
+     *             if the directory cannot be prepared
+     */
+    protected void addShardedXmlFormatter(final ReportSupport report, final File directory, final int maxClasses)
+            throws IOException {
+        report.addShardedXmlFormatter(directory, this.pretty ? this.sourceEncoding : "UTF-8", this.pretty,
+                getCompression(), maxClasses);
+    }
+
+    /**
+     * Get the file the XML report is actually written to.
+     *
+     * @param xmlFile
+     *            the configured XML file
+     * @return the file name, including the suffix of the compression
+     */
+    protected File getXmlOutputFile(final File xmlFile) {
+        return getCompression().getFile(xmlFile);
+    }
+
+    private Compression getCompression() {
+        return this.compression != null ? this.compression : Compression.NONE;
+    }
+
+    /**
+     * Write the report of a project and its dependencies, using all
+     * formatters which have been added. <br>
+     * The execution data must already be loaded.
+     *
+     * @param report
+     *            the report support to use
+     * @param projects
+     *            the project and its dependencies
+     * @throws IOException
+     *             if creating the report fails
+     */
+    protected void writeReport(final ReportSupport report, final List<MavenProject> projects) throws IOException {
+        writeReport(report, projects, "XML");
+    }
+
+    /**
+     * Write the report of the project and its dependencies, using all
+     * formatters which have been added. <br>
+     * The execution data must already be loaded.
+     *
+     * @param report
+     *            the report support to use
+     * @param projects
+     *            the project and its dependencies
+     * @param name
+     *            the name of the group containing the bundles, used as title
+     *            by the HTML report
+     * @throws IOException
+     *             if creating the report fails
+     */
+    protected void writeReport(final ReportSupport report, final List<MavenProject> projects, final String name)
+            throws IOException {
+        final IReportVisitor visitor = report.initRootVisitor();
+        final IReportGroupVisitor group = visitor.visitGroup(name);
+
+        report.processProjects(group, projects, this.includes, this.excludes, this.sourceEncoding);
+
+        visitor.visitEnd();
+    }
+
+    /**
+     * Find the reactor dependencies of a project.
+     *
+     * @param project
+     *            the project
+     * @return the reactor projects the project depends on, using the
+     *         configured scopes
+     */
+    protected List<MavenProject> findDependencies(final MavenProject project) {
+        final long start = System.nanoTime();
+
+        final ReactorIndex index = ReactorIndex.forSession(this.session, this.reactorProjects);
+        final List<MavenProject> result = index.findDependencies(project, new HashSet<>(Arrays.asList(this.scopes)),
+                this.transientDependencies, getLog());
+
+        getLog().debug(format("Resolved %s reactor dependencies in %.3f ms", Integer.valueOf(result.size()),
+                Double.valueOf((System.nanoTime() - start) / 1_000_000.0)));
+
+        return result;
+    }
+
+    /**
+     * Resolve the configured execution data files.
+     *
+     * @param execFile
+     *            the main execution data file, may contain wildcards
+     * @param execFiles
+     *            additional execution data files, may contain wildcards, may
+     *            be {@code null}
+     * @return the existing files, without duplicates
+     * @throws MojoExecutionException
+     *             if scanning for files fails
+     */
+    protected static List<File> resolveExecFiles(final File execFile, final List<File> execFiles)
+            throws MojoExecutionException {
+        final List<File> patterns = new ArrayList<>();
+        patterns.add(execFile);
+        if (execFiles != null) {
+            patterns.addAll(execFiles);
+        }
+
+        final Set<File> result = new LinkedHashSet<>();
+        try {
+            for (final File pattern : patterns) {
+                result.addAll(resolveFiles(pattern));
+            }
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Failed to resolve execution data files", e);
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * Resolve a path, which may contain wildcards, to existing files.
+     *
+     * @param pattern
+     *            the path, may contain wildcards
+     * @return the matching files, sorted by path
+     * @throws IOException
+     *             if scanning for files fails
+     */
+    protected static List<File> resolveFiles(final File pattern) throws IOException {
+        final String path = pattern.getPath();
+
+        final int wildcard = indexOfAny(path, "*?");
+        if (wildcard < 0) {
+            if (pattern.isFile()) {
+                return Collections.singletonList(pattern);
+            } else {
+                return Collections.emptyList();
+            }
+        }
+
+        // split into the base directory and the pattern relative to it
+
+        final int separator = Math.max(path.lastIndexOf('/', wildcard), path.lastIndexOf(File.separatorChar, wildcard));
+        final File base = new File(separator < 0 ? "." : path.substring(0, separator + 1));
+        if (!base.isDirectory()) {
+            return Collections.emptyList();
+        }
+
+        final List<File> result = FileUtils.getFiles(base, path.substring(separator + 1), null);
+        // ensure a stable order
+        Collections.sort(result);
+        return result;
+    }
+
+    private static int indexOfAny(final String string, final String chars) {
+        for (int i = 0; i < string.length(); i++) {
+            if (chars.indexOf(string.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
@@ -0,0 +1,371 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.maven.execution.MavenSession;
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICoverageVisitor;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+
+/**
+ * A cache of analyzed class files. <br>
+ * Each execution of the mojo analyzes the classes of all its reactor
+ * dependencies. For a bigger reactor this means that the same class files get
+ * read and analyzed over and over again. This cache keeps the information
+ * required to skip this work:
+ * <ul>
+ * <li>The class ID and name of a class file, keyed by its path. As long as the
+ * file doesn't change, it doesn't need to be read again.</li>
+ * <li>The coverage of a class, keyed by the class ID and the probes of the
+ * execution data. Most classes of a dependency are not executed by the tests
+ * of a module, so their coverage is the same for all modules.</li>
+ * </ul>
+ * The cache has a maximum size, entries which are least recently used get
+ * evicted first. The size of an entry is estimated.
+ * <p>
+ * If a {@link PersistentAnalysisCache} is set, coverage which is not found in
+ * memory is looked up from disk before analyzing the class, and newly analyzed
+ * coverage is written to disk.
+ * </p>
+ */
+final class AnalysisCache {
+
+    private static final long CLASS_FILE_SIZE = 128;
+
+    private final long maxSize;
+
+    private final PersistentAnalysisCache persistent;
+
+    private final Map<String, ClassFile> classFiles = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<CoverageKey, CachedCoverage> coverage = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long size;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong persistentHits = new AtomicLong();
+
+    /**
+     * Create a new cache.
+     *
+     * @param maxSize
+     *            the maximum estimated size in bytes
+     * @param persistent
+     *            the persistent cache to use, may be {@code null}
+     */
+    public AnalysisCache(final long maxSize, final PersistentAnalysisCache persistent) {
+        this.maxSize = maxSize;
+        this.persistent = persistent;
+    }
+
+    /**
+     * Get the cache of the current build session.
+     *
+     * @param session
+     *            the build session
+     * @param maxSize
+     *            the maximum size of the cache, in bytes. This is only used
+     *            when the cache gets created.
+     * @param persistent
+     *            the persistent cache to use, may be {@code null}. This is
+     *            only used when the cache gets created.
+     * @return the cache instance of the session
+     */
+    public static AnalysisCache forSession(final MavenSession session, final long maxSize,
+            final PersistentAnalysisCache persistent) {
+        return SessionScoped.get(session, AnalysisCache.class, new SessionScoped.Factory<AnalysisCache>() {
+
+            @Override
+            public AnalysisCache create() {
+                return new AnalysisCache(maxSize, persistent);
+            }
+        });
+    }
+
+    /**
+     * Analyze a class file, using the cache if possible.
+     *
+     * @param file
+     *            the class file to analyze
+     * @param executionData
+     *            the execution data to analyze with
+     * @param visitor
+     *            the visitor receiving the coverage of the class
+     * @throws IOException
+     *             if the class file cannot be read or analyzed
+     */
+    public void analyze(final File file, final ExecutionDataStore executionData, final ICoverageVisitor visitor)
+            throws IOException {
+
+        final String path = file.getAbsolutePath();
+        final ClassFile classFile = getClassFile(path, file);
+
+        byte[] data = null;
+        final long id;
+        if (classFile != null) {
+            id = classFile.id;
+        } else {
+            data = Files.readAllBytes(file.toPath());
+            id = Crc64.classId(data);
+        }
+
+        final CoverageKey key = makeKey(id, classFile, executionData);
+        if (key != null) {
+            final IClassCoverage result = getCoverage(key);
+            if (result != null) {
+                this.hits.incrementAndGet();
+                visitor.visitCoverage(result);
+                return;
+            }
+        }
+
+        if (this.persistent != null) {
+            final IClassCoverage result = getPersistentCoverage(id, executionData);
+            if (result != null) {
+                this.persistentHits.incrementAndGet();
+                visitor.visitCoverage(result);
+
+                final ClassFile cached = new ClassFile(file, id, result.getName());
+                putClassFile(path, cached);
+                final CoverageKey cachedKey = key != null ? key : makeKey(id, cached, executionData);
+                if (cachedKey != null) {
+                    putCoverage(cachedKey, result);
+                }
+                return;
+            }
+        }
+
+        this.misses.incrementAndGet();
+
+        if (data == null) {
+            data = Files.readAllBytes(file.toPath());
+        }
+
+        final List<IClassCoverage> result = new ArrayList<>(1);
+        new Analyzer(executionData, new ICoverageVisitor() {
+
+            @Override
+            public void visitCoverage(final IClassCoverage coverage) {
+                result.add(coverage);
+            }
+        }).analyzeClass(data, file.getPath());
+
+        for (final IClassCoverage c : result) {
+            visitor.visitCoverage(c);
+        }
+
+        if (result.size() != 1) {
+            // filtered synthetic class
+            return;
+        }
+
+        final IClassCoverage c = result.get(0);
+        final ClassFile analyzed = new ClassFile(file, c.getId(), c.getName());
+        putClassFile(path, analyzed);
+
+        final CoverageKey analyzedKey = key != null ? key : makeKey(c.getId(), analyzed, executionData);
+        if (analyzedKey != null && !c.isNoMatch()) {
+            putCoverage(analyzedKey, c);
+        }
+
+        if (this.persistent != null && !c.isNoMatch()) {
+            final ExecutionData executed = executionData.get(c.getId());
+            this.persistent.put(executed != null ? executed.getProbes() : null, c);
+        }
+    }
+
+    /**
+     * Get the coverage of a class from the persistent cache.
+     *
+     * @return the coverage, or {@code null} if the cache has no entry, or the
+     *         entry doesn't apply to the execution data
+     */
+    private IClassCoverage getPersistentCoverage(final long id, final ExecutionDataStore executionData) {
+        final ExecutionData data = executionData.get(id);
+        if (data != null) {
+            return this.persistent.get(id, data.getProbes());
+        }
+
+        final IClassCoverage result = this.persistent.get(id, null);
+        if (result != null && executionData.contains(result.getName())) {
+            // the execution data is of a different version of the class
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * Create the key for looking up the coverage of a class.
+     *
+     * @return the key, or {@code null} if the coverage must not be looked up
+     *         from the cache
+     */
+    private static CoverageKey makeKey(final long id, final ClassFile classFile,
+            final ExecutionDataStore executionData) {
+
+        final ExecutionData data = executionData.get(id);
+        if (data != null) {
+            return new CoverageKey(id, data.getProbes());
+        }
+
+        if (classFile == null || executionData.contains(classFile.name)) {
+            // we don't know the name, or the class doesn't match
+            return null;
+        }
+
+        return new CoverageKey(id, null);
+    }
+
+    private synchronized ClassFile getClassFile(final String path, final File file) {
+        final ClassFile result = this.classFiles.get(path);
+        if (result != null && !result.matches(file)) {
+            this.classFiles.remove(path);
+            this.size -= CLASS_FILE_SIZE;
+            return null;
+        }
+        return result;
+    }
+
+    private synchronized void putClassFile(final String path, final ClassFile classFile) {
+        if (this.classFiles.put(path, classFile) == null) {
+            this.size += CLASS_FILE_SIZE;
+        }
+        evict();
+    }
+
+    private synchronized IClassCoverage getCoverage(final CoverageKey key) {
+        final CachedCoverage result = this.coverage.get(key);
+        return result != null ? result.coverage : null;
+    }
+
+    private synchronized void putCoverage(final CoverageKey key, final IClassCoverage coverage) {
+        final CachedCoverage entry = new CachedCoverage(coverage, key);
+        final CachedCoverage old = this.coverage.put(key, entry);
+        if (old != null) {
+            this.size -= old.size;
+        }
+        this.size += entry.size;
+        evict();
+    }
+
+    private void evict() {
+        // evict coverage first, it is the bigger part
+
+        final Iterator<CachedCoverage> i = this.coverage.values().iterator();
+        while (this.size > this.maxSize && i.hasNext()) {
+            this.size -= i.next().size;
+            i.remove();
+        }
+
+        final Iterator<ClassFile> j = this.classFiles.values().iterator();
+        while (this.size > this.maxSize && j.hasNext()) {
+            j.next();
+            j.remove();
+            this.size -= CLASS_FILE_SIZE;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(
+                "[classFiles: %s, coverage: %s, size: %s bytes, hits: %s, persistent hits: %s, misses: %s, persistent: %s]",
+                Integer.valueOf(this.classFiles.size()), Integer.valueOf(this.coverage.size()),
+                Long.valueOf(this.size), Long.valueOf(this.hits.get()), Long.valueOf(this.persistentHits.get()),
+                Long.valueOf(this.misses.get()), this.persistent);
+    }
+
+    private static class ClassFile {
+        private final long length;
+        private final long lastModified;
+
+        private final long id;
+        private final String name;
+
+        public ClassFile(final File file, final long id, final String name) {
+            this.length = file.length();
+            this.lastModified = file.lastModified();
+            this.id = id;
+            this.name = name;
+        }
+
+        public boolean matches(final File file) {
+            return this.length == file.length() && this.lastModified == file.lastModified();
+        }
+    }
+
+    private static class CoverageKey {
+        private final long id;
+        private final boolean[] probes;
+        private final int hashCode;
+
+        public CoverageKey(final long id, final boolean[] probes) {
+            this.id = id;
+            this.probes = probes != null ? probes.clone() : null;
+            this.hashCode = 31 * Long.valueOf(id).hashCode() + Arrays.hashCode(probes);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CoverageKey)) {
+                return false;
+            }
+            final CoverageKey other = (CoverageKey) obj;
+            return this.id == other.id && Arrays.equals(this.probes, other.probes);
+        }
+    }
+
+    private static class CachedCoverage {
+        private final IClassCoverage coverage;
+        private final long size;
+
+        public CachedCoverage(final IClassCoverage coverage, final CoverageKey key) {
+            this.coverage = coverage;
+            this.size = estimateSize(coverage) + (key.probes != null ? key.probes.length : 0);
+        }
+
+        private static long estimateSize(final IClassCoverage coverage) {
+            long result = 256 + estimateLines(coverage.getFirstLine(), coverage.getLastLine());
+            for (final IMethodCoverage method : coverage.getMethods()) {
+                result += 128 + estimateLines(method.getFirstLine(), method.getLastLine());
+            }
+            return result;
+        }
+
+        private static long estimateLines(final int first, final int last) {
+            if (first < 0 || last < first) {
+                return 0;
+            }
+            return (last - first + 1) * 32L;
+        }
+    }
+}
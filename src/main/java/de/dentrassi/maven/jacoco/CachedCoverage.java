@@ -0,0 +1,399 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.jacoco.core.analysis.CoverageNodeImpl;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.ICoverageNode;
+import org.jacoco.core.analysis.ILine;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.analysis.ISourceNode;
+
+/**
+ * Coverage nodes re-created from the {@link PersistentAnalysisCache}. <br>
+ * The nodes only implement the public interfaces of Jacoco, the
+ * implementations of Jacoco are internal and change between its versions. All
+ * counters are restored as they were stored, nothing is calculated again.
+ */
+final class CachedCoverage {
+
+    private CachedCoverage() {
+    }
+
+    /**
+     * An immutable counter.
+     */
+    static final class Counter implements ICounter {
+
+        static final Counter EMPTY = new Counter(0, 0);
+
+        private final int missed;
+        private final int covered;
+
+        private Counter(final int missed, final int covered) {
+            this.missed = missed;
+            this.covered = covered;
+        }
+
+        static Counter of(final int missed, final int covered) {
+            if (missed == 0 && covered == 0) {
+                return EMPTY;
+            }
+            return new Counter(missed, covered);
+        }
+
+        Counter add(final ICounter counter) {
+            return of(this.missed + counter.getMissedCount(), this.covered + counter.getCoveredCount());
+        }
+
+        @Override
+        public double getValue(final CounterValue value) {
+            switch (value) {
+            case TOTALCOUNT:
+                return getTotalCount();
+            case MISSEDCOUNT:
+                return getMissedCount();
+            case COVEREDCOUNT:
+                return getCoveredCount();
+            case MISSEDRATIO:
+                return getMissedRatio();
+            case COVEREDRATIO:
+                return getCoveredRatio();
+            default:
+                throw new AssertionError(value);
+            }
+        }
+
+        @Override
+        public int getTotalCount() {
+            return this.missed + this.covered;
+        }
+
+        @Override
+        public int getCoveredCount() {
+            return this.covered;
+        }
+
+        @Override
+        public int getMissedCount() {
+            return this.missed;
+        }
+
+        @Override
+        public double getCoveredRatio() {
+            return (double) this.covered / (this.missed + this.covered);
+        }
+
+        @Override
+        public double getMissedRatio() {
+            return (double) this.missed / (this.missed + this.covered);
+        }
+
+        @Override
+        public int getStatus() {
+            int status = this.covered > 0 ? FULLY_COVERED : ICounter.EMPTY;
+            if (this.missed > 0) {
+                status |= NOT_COVERED;
+            }
+            return status;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Counter[%s/%s]", Integer.valueOf(this.missed), Integer.valueOf(this.covered));
+        }
+    }
+
+    /**
+     * The counters of a single source line.
+     */
+    static final class Line implements ILine {
+
+        static final Line EMPTY = new Line(Counter.EMPTY, Counter.EMPTY);
+
+        private final Counter instructions;
+        private final Counter branches;
+
+        Line(final Counter instructions, final Counter branches) {
+            this.instructions = instructions;
+            this.branches = branches;
+        }
+
+        Line add(final ILine line) {
+            return new Line(this.instructions.add(line.getInstructionCounter()),
+                    this.branches.add(line.getBranchCounter()));
+        }
+
+        @Override
+        public ICounter getInstructionCounter() {
+            return this.instructions;
+        }
+
+        @Override
+        public ICounter getBranchCounter() {
+            return this.branches;
+        }
+
+        @Override
+        public int getStatus() {
+            return this.instructions.getStatus() | this.branches.getStatus();
+        }
+    }
+
+    /**
+     * A node with counters and source lines.
+     */
+    abstract static class SourceNode implements ISourceNode {
+
+        private final ElementType elementType;
+        private final String name;
+
+        private final Counter[] counters = new Counter[CounterEntity.values().length];
+
+        private int firstLine = UNKNOWN_LINE;
+        private Line[] lines = new Line[0];
+
+        SourceNode(final ElementType elementType, final String name) {
+            this.elementType = elementType;
+            this.name = name;
+            for (int i = 0; i < this.counters.length; i++) {
+                this.counters[i] = Counter.EMPTY;
+            }
+        }
+
+        void setCounter(final CounterEntity entity, final Counter counter) {
+            this.counters[entity.ordinal()] = counter;
+        }
+
+        /**
+         * Set the lines of the node.
+         *
+         * @param firstLine
+         *            the number of the first line, {@link #UNKNOWN_LINE} if
+         *            there are no lines
+         * @param lines
+         *            the lines, starting with the first line
+         */
+        void setLines(final int firstLine, final Line[] lines) {
+            this.firstLine = lines.length > 0 ? firstLine : UNKNOWN_LINE;
+            this.lines = lines;
+        }
+
+        @Override
+        public ElementType getElementType() {
+            return this.elementType;
+        }
+
+        @Override
+        public String getName() {
+            return this.name;
+        }
+
+        @Override
+        public ICounter getCounter(final CounterEntity entity) {
+            return this.counters[entity.ordinal()];
+        }
+
+        @Override
+        public ICounter getInstructionCounter() {
+            return getCounter(CounterEntity.INSTRUCTION);
+        }
+
+        @Override
+        public ICounter getBranchCounter() {
+            return getCounter(CounterEntity.BRANCH);
+        }
+
+        @Override
+        public ICounter getLineCounter() {
+            return getCounter(CounterEntity.LINE);
+        }
+
+        @Override
+        public ICounter getComplexityCounter() {
+            return getCounter(CounterEntity.COMPLEXITY);
+        }
+
+        @Override
+        public ICounter getMethodCounter() {
+            return getCounter(CounterEntity.METHOD);
+        }
+
+        @Override
+        public ICounter getClassCounter() {
+            return getCounter(CounterEntity.CLASS);
+        }
+
+        @Override
+        public boolean containsCode() {
+            return getInstructionCounter().getTotalCount() != 0;
+        }
+
+        @Override
+        public ICoverageNode getPlainCopy() {
+            final CoverageNodeImpl copy = new CoverageNodeImpl(this.elementType, this.name);
+            copy.increment(this);
+            return copy;
+        }
+
+        @Override
+        public int getFirstLine() {
+            return this.firstLine;
+        }
+
+        @Override
+        public int getLastLine() {
+            if (this.firstLine == UNKNOWN_LINE) {
+                return UNKNOWN_LINE;
+            }
+            return this.firstLine + this.lines.length - 1;
+        }
+
+        @Override
+        public ILine getLine(final int nr) {
+            if (this.firstLine == UNKNOWN_LINE || nr < this.firstLine || nr > getLastLine()) {
+                return Line.EMPTY;
+            }
+            return this.lines[nr - this.firstLine];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s[%s]", getClass().getSimpleName(), this.name);
+        }
+    }
+
+    static final class MethodCoverage extends SourceNode implements IMethodCoverage {
+
+        private final String desc;
+        private final String signature;
+
+        MethodCoverage(final String name, final String desc, final String signature) {
+            super(ElementType.METHOD, name);
+            this.desc = desc;
+            this.signature = signature;
+        }
+
+        @Override
+        public String getDesc() {
+            return this.desc;
+        }
+
+        @Override
+        public String getSignature() {
+            return this.signature;
+        }
+    }
+
+    static final class ClassCoverage extends SourceNode implements IClassCoverage {
+
+        private final long id;
+        private final String signature;
+        private final String superName;
+        private final String[] interfaceNames;
+        private final String sourceFileName;
+
+        private final List<IMethodCoverage> methods = new ArrayList<>();
+
+        ClassCoverage(final long id, final String name, final String signature, final String superName,
+                final String[] interfaceNames, final String sourceFileName) {
+            super(ElementType.CLASS, name);
+            this.id = id;
+            this.signature = signature;
+            this.superName = superName;
+            this.interfaceNames = interfaceNames;
+            this.sourceFileName = sourceFileName;
+        }
+
+        /**
+         * Set the methods, the lines of the class are the sum of the lines of
+         * its methods.
+         */
+        void setMethods(final List<? extends IMethodCoverage> methods) {
+            this.methods.clear();
+            this.methods.addAll(methods);
+
+            int first = Integer.MAX_VALUE;
+            int last = UNKNOWN_LINE;
+            for (final IMethodCoverage method : methods) {
+                if (method.getFirstLine() != UNKNOWN_LINE) {
+                    first = Math.min(first, method.getFirstLine());
+                    last = Math.max(last, method.getLastLine());
+                }
+            }
+            if (last == UNKNOWN_LINE) {
+                setLines(UNKNOWN_LINE, new Line[0]);
+                return;
+            }
+
+            final Line[] lines = new Line[last - first + 1];
+            Arrays.fill(lines, Line.EMPTY);
+            for (final IMethodCoverage method : methods) {
+                if (method.getFirstLine() == UNKNOWN_LINE) {
+                    continue;
+                }
+                for (int nr = method.getFirstLine(); nr <= method.getLastLine(); nr++) {
+                    lines[nr - first] = lines[nr - first].add(method.getLine(nr));
+                }
+            }
+            setLines(first, lines);
+        }
+
+        @Override
+        public long getId() {
+            return this.id;
+        }
+
+        @Override
+        public boolean isNoMatch() {
+            // classes not matching their execution data are never cached
+            return false;
+        }
+
+        @Override
+        public String getSignature() {
+            return this.signature;
+        }
+
+        @Override
+        public String getSuperName() {
+            return this.superName;
+        }
+
+        @Override
+        public String[] getInterfaceNames() {
+            return this.interfaceNames;
+        }
+
+        @Override
+        public String getPackageName() {
+            final int pos = getName().lastIndexOf('/');
+            return pos == -1 ? "" : getName().substring(0, pos);
+        }
+
+        @Override
+        public String getSourceFileName() {
+            return this.sourceFileName;
+        }
+
+        @Override
+        public Collection<IMethodCoverage> getMethods() {
+            return Collections.unmodifiableList(this.methods);
+        }
+    }
+}
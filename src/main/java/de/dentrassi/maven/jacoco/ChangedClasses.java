@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.project.MavenProject;
+
+/**
+ * A list of changed classes, used to create a report of only those classes.
+ * <br>
+ * The list is read from a text file, containing one entry per line. Empty
+ * lines and lines starting with <code>#</code> are ignored. An entry can be:
+ * <ul>
+ * <li>The path of a source file, like <code>core/src/main/java/a/B.java</code>.
+ * Relative paths are resolved against a base directory. The file is mapped to
+ * a class name using the compile source roots of the projects.</li>
+ * <li>The path of a class file, relative to the output directory, like
+ * <code>a/B.class</code>.</li>
+ * <li>A class name, like <code>a.B</code>.</li>
+ * </ul>
+ * Nested and inner classes are always included with their top level class.
+ */
+final class ChangedClasses {
+
+    private static final String CLASS_SUFFIX = ".class";
+
+    private final Set<String> classNames = new HashSet<>();
+
+    private final List<Path> sourceFiles = new ArrayList<>();
+
+    private ChangedClasses() {
+    }
+
+    /**
+     * Read the list of changed classes from a file.
+     *
+     * @param file
+     *            the file to read
+     * @param baseDirectory
+     *            the directory to resolve relative source paths against
+     * @return the changed classes
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public static ChangedClasses read(final File file, final File baseDirectory) throws IOException {
+        final ChangedClasses result = new ChangedClasses();
+
+        for (String line : Files.readAllLines(file.toPath(), UTF_8)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            if (line.endsWith(CLASS_SUFFIX)) {
+                result.classNames.add(topLevelName(line.replace('\\', '/')));
+            } else if (line.indexOf('/') >= 0 || line.indexOf('\\') >= 0 || line.endsWith(".java")) {
+                File source = new File(line);
+                if (!source.isAbsolute()) {
+                    source = new File(baseDirectory, line);
+                }
+                result.sourceFiles.add(source.toPath().toAbsolutePath().normalize());
+            } else {
+                result.classNames.add(topLevelName(line.replace('.', '/')));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Get the names of the changed top level classes.
+     *
+     * @param projects
+     *            the projects, whose compile source roots are used to map
+     *            source files to class names
+     * @return the VM names of the top level classes, like <code>a/B</code>
+     */
+    public Set<String> getClassNames(final List<MavenProject> projects) {
+        if (this.sourceFiles.isEmpty()) {
+            return Collections.unmodifiableSet(this.classNames);
+        }
+
+        final Set<String> result = new HashSet<>(this.classNames);
+        for (final MavenProject project : projects) {
+            for (final File root : ReportSupport.getCompileSourceRoots(project)) {
+                final Path rootPath = root.toPath().toAbsolutePath().normalize();
+                for (final Path source : this.sourceFiles) {
+                    if (source.startsWith(rootPath)) {
+                        final String path = rootPath.relativize(source).toString();
+                        result.add(stripExtension(path.replace(File.separatorChar, '/')));
+                    }
+                }
+            }
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * Test if a class file belongs to one of the changed classes.
+     *
+     * @param classNames
+     *            the VM names of the changed top level classes
+     * @param fileName
+     *            the path of the class file, relative to the output directory
+     * @return {@code true} if the file is a class file of one of the classes
+     */
+    public static boolean matches(final Set<String> classNames, final String fileName) {
+        final String name = fileName.replace(File.separatorChar, '/');
+        if (!name.endsWith(CLASS_SUFFIX)) {
+            return false;
+        }
+        return classNames.contains(topLevelName(ReportSupport.stripVersionPrefix(name)));
+    }
+
+    private static String topLevelName(final String name) {
+        String result = name;
+        if (result.endsWith(CLASS_SUFFIX)) {
+            result = result.substring(0, result.length() - CLASS_SUFFIX.length());
+        }
+        final int start = result.lastIndexOf('/') + 1;
+        final int idx = result.indexOf('$', start);
+        return idx > start ? result.substring(0, idx) : result;
+    }
+
+    private static String stripExtension(final String name) {
+        final int slash = name.lastIndexOf('/');
+        final int dot = name.lastIndexOf('.');
+        return dot > slash ? name.substring(0, dot) : name;
+    }
+}
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import static java.lang.String.format;
+import static org.apache.maven.plugins.annotations.LifecyclePhase.VERIFY;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+import org.jacoco.core.analysis.ICoverageNode;
+import org.jacoco.report.check.IViolationsOutput;
+import org.jacoco.report.check.Limit;
+import org.jacoco.report.check.Rule;
+
+/**
+ * Check the coverage of a project including its dependencies against a set of
+ * rules. <br>
+ * The rules are evaluated while the classes are analyzed, the same way the
+ * <code>xml</code> goal analyzes them. No report has to be written and parsed
+ * again, unless an XML file is configured, in which case it is written from
+ * the same analysis.
+ *
+ * @since 0.1.7
+ */
+@Mojo(defaultPhase = VERIFY, name = "check", requiresProject = true, inheritByDefault = true, requiresDependencyResolution = ResolutionScope.TEST, threadSafe = true)
+public class CheckMojo extends AbstractReportMojo {
+
+    /**
+     * The rules to check. <br>
+     * The configuration of a rule is the same as the one of the Jacoco Maven
+     * plugin, see {@link RuleConfiguration}.
+     */
+    @Parameter(required = true)
+    private List<RuleConfiguration> rules;
+
+    /**
+     * Fail the build if a rule is violated. <br>
+     * Otherwise violations are only logged as warnings.
+     */
+    @Parameter(property = PROP_PREFIX + "haltOnFailure", defaultValue = "true", required = true)
+    private boolean haltOnFailure = true;
+
+    /**
+     * An optional XML report to write. <br>
+     * If set, the XML report is written from the same analysis as the check.
+     * By default no report is written.
+     */
+    @Parameter(property = PROP_PREFIX + "checkXmlFile")
+    private File xmlFile;
+
+    public void setRules(final List<RuleConfiguration> rules) {
+        this.rules = rules;
+    }
+
+    public void setHaltOnFailure(final boolean haltOnFailure) {
+        this.haltOnFailure = haltOnFailure;
+    }
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (this.skip) {
+            return;
+        }
+
+        if (this.streaming) {
+            throw new MojoExecutionException(
+                    "The check goal doesn't support streaming, rules require the complete coverage of a bundle");
+        }
+
+        if (this.rules == null || this.rules.isEmpty()) {
+            getLog().info("Skipping check. No rules configured.");
+            return;
+        }
+
+        final List<File> execFiles = resolveExecFiles(this.execFile, this.execFiles);
+        if (execFiles.isEmpty()) {
+            getLog().info("Skipping check. No execution data found.");
+            return;
+        }
+
+        final List<MavenProject> projects = new ArrayList<>();
+        projects.add(this.project);
+        projects.addAll(findDependencies(this.project));
+
+        final List<Rule> rules = new ArrayList<>(this.rules.size());
+        for (final RuleConfiguration rule : this.rules) {
+            rules.add(rule.getRule());
+        }
+
+        final Violations violations = new Violations();
+
+        try (final ReportSupport report = createReportSupport()) {
+            applyChangedClasses(report, projects);
+            if (this.filterExecutionData) {
+                report.filterExecutionData(projects, this.includes, this.excludes);
+            }
+            report.loadExecutionData(execFiles);
+
+            report.addRulesChecker(rules, violations);
+            if (this.xmlFile != null) {
+                addXmlFormatter(report, this.xmlFile);
+            }
+            writeReport(report, projects);
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Failed to check coverage", e);
+        }
+
+        if (violations.messages.isEmpty()) {
+            getLog().info("All coverage checks have been met.");
+            return;
+        }
+
+        for (final String message : violations.messages) {
+            if (this.haltOnFailure) {
+                getLog().error(message);
+            } else {
+                getLog().warn(message);
+            }
+        }
+
+        if (this.haltOnFailure) {
+            final int more = violations.messages.size() - 1;
+            throw new MojoFailureException("Coverage checks have not been met: " + violations.messages.get(0)
+                    + (more > 0 ? format(" (and %s more)", Integer.valueOf(more)) : ""));
+        }
+    }
+
+    private static class Violations implements IViolationsOutput {
+        private final List<String> messages = new ArrayList<>();
+
+        @Override
+        public synchronized void onViolation(final ICoverageNode node, final Rule rule, final Limit limit,
+                final String message) {
+            this.messages.add(message);
+        }
+    }
+}
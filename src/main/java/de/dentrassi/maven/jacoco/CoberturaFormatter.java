@@ -0,0 +1,272 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.List;
+
+import org.jacoco.core.JaCoCo;
+import org.jacoco.core.analysis.CoverageNodeImpl;
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.ICoverageNode;
+import org.jacoco.core.analysis.ILine;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.analysis.IPackageCoverage;
+import org.jacoco.core.analysis.ISourceNode;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.report.IReportGroupVisitor;
+import org.jacoco.report.IReportVisitor;
+import org.jacoco.report.ISourceFileLocator;
+
+/**
+ * A formatter writing Cobertura XML reports. <br>
+ * Packages are written as soon as they are visited. The root element carries
+ * the totals of the whole report, which are only known at the end. So the
+ * start tag of the root element is written with a block of spaces, which gets
+ * overwritten with the attributes once the report is complete. For this the
+ * report must be written to a plain file.
+ * <p>
+ * Jacoco doesn't count executions, so the hit count of a covered line is
+ * always one.
+ * </p>
+ */
+final class CoberturaFormatter {
+
+    private static final String PROLOG = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<!DOCTYPE coverage SYSTEM \"http://cobertura.sourceforge.net/xml/coverage-04.dtd\">\n"
+            + "<coverage";
+
+    /**
+     * The space reserved for the attributes of the root element.
+     */
+    private static final int ROOT_ATTRIBUTES_SIZE = 384;
+
+    private final List<File> sourceRoots;
+
+    /**
+     * Create a new formatter.
+     *
+     * @param sourceRoots
+     *            the source roots, file names of classes are relative to them
+     */
+    public CoberturaFormatter(final List<File> sourceRoots) {
+        this.sourceRoots = sourceRoots;
+    }
+
+    /**
+     * Create a visitor writing the report.
+     *
+     * @param file
+     *            the file the output stream writes to
+     * @param output
+     *            the output stream writing to the beginning of the file
+     * @return the report visitor
+     * @throws IOException
+     *             if writing the start of the report fails
+     */
+    public IReportVisitor createVisitor(final File file, final OutputStream output) throws IOException {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(output, UTF_8));
+
+        writer.write(PROLOG);
+        writer.write(spaces(ROOT_ATTRIBUTES_SIZE));
+        writer.write(">\n");
+
+        writer.write("  <sources>\n");
+        for (final File root : this.sourceRoots) {
+            writer.write("    <source>" + escape(root.getAbsolutePath()) + "</source>\n");
+        }
+        writer.write("  </sources>\n");
+        writer.write("  <packages>\n");
+
+        final CoverageNodeImpl total = new CoverageNodeImpl(ICoverageNode.ElementType.GROUP, "total");
+        final long timestamp = System.currentTimeMillis();
+
+        return new IReportVisitor() {
+
+            @Override
+            public void visitInfo(final List<SessionInfo> sessionInfos,
+                    final Collection<ExecutionData> executionData) {
+            }
+
+            @Override
+            public void visitBundle(final IBundleCoverage bundle, final ISourceFileLocator locator)
+                    throws IOException {
+                for (final IPackageCoverage pkg : bundle.getPackages()) {
+                    total.increment(pkg);
+                    writePackage(writer, pkg);
+                }
+            }
+
+            @Override
+            public IReportGroupVisitor visitGroup(final String name) {
+                return this;
+            }
+
+            @Override
+            public void visitEnd() throws IOException {
+                writer.write("  </packages>\n");
+                writer.write("</coverage>\n");
+                writer.close();
+
+                writeRootAttributes(file, total, timestamp);
+            }
+        };
+    }
+
+    private static void writeRootAttributes(final File file, final ICoverageNode total, final long timestamp)
+            throws IOException {
+        final ICounter lines = total.getLineCounter();
+        final ICounter branches = total.getBranchCounter();
+
+        final StringBuilder sb = new StringBuilder();
+        sb.append(" line-rate=\"").append(rate(lines)).append('"');
+        sb.append(" branch-rate=\"").append(rate(branches)).append('"');
+        sb.append(" lines-covered=\"").append(lines.getCoveredCount()).append('"');
+        sb.append(" lines-valid=\"").append(lines.getTotalCount()).append('"');
+        sb.append(" branches-covered=\"").append(branches.getCoveredCount()).append('"');
+        sb.append(" branches-valid=\"").append(branches.getTotalCount()).append('"');
+        sb.append(" complexity=\"").append(total.getComplexityCounter().getTotalCount()).append('"');
+        sb.append(" version=\"").append(escape(JaCoCo.VERSION)).append('"');
+        sb.append(" timestamp=\"").append(timestamp).append('"');
+
+        if (sb.length() > ROOT_ATTRIBUTES_SIZE) {
+            throw new IOException("Attributes of the root element exceed the reserved space");
+        }
+        sb.append(spaces(ROOT_ATTRIBUTES_SIZE - sb.length()));
+
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.seek(PROLOG.length());
+            out.write(sb.toString().getBytes(UTF_8));
+        }
+    }
+
+    private static void writePackage(final Writer writer, final IPackageCoverage pkg) throws IOException {
+        writer.write("    <package name=\"" + escape(pkg.getName().replace('/', '.')) + "\"" + rates(pkg) + ">\n");
+        writer.write("      <classes>\n");
+
+        for (final IClassCoverage c : pkg.getClasses()) {
+            final String fileName;
+            if (c.getSourceFileName() == null) {
+                fileName = "";
+            } else if (pkg.getName().isEmpty()) {
+                fileName = c.getSourceFileName();
+            } else {
+                fileName = pkg.getName() + "/" + c.getSourceFileName();
+            }
+
+            writer.write("        <class name=\"" + escape(c.getName().replace('/', '.')) + "\" filename=\""
+                    + escape(fileName) + "\"" + rates(c) + ">\n");
+
+            writer.write("          <methods>\n");
+            for (final IMethodCoverage m : c.getMethods()) {
+                writer.write("            <method name=\"" + escape(m.getName()) + "\" signature=\""
+                        + escape(m.getDesc()) + "\"" + rates(m) + ">\n");
+                writeLines(writer, m, "              ");
+                writer.write("            </method>\n");
+            }
+            writer.write("          </methods>\n");
+
+            writeLines(writer, c, "          ");
+            writer.write("        </class>\n");
+        }
+
+        writer.write("      </classes>\n");
+        writer.write("    </package>\n");
+    }
+
+    private static void writeLines(final Writer writer, final ISourceNode node, final String indent)
+            throws IOException {
+        if (node.getFirstLine() == ISourceNode.UNKNOWN_LINE) {
+            writer.write(indent + "<lines/>\n");
+            return;
+        }
+
+        writer.write(indent + "<lines>\n");
+        for (int nr = node.getFirstLine(); nr <= node.getLastLine(); nr++) {
+            final ILine line = node.getLine(nr);
+            if (line.getStatus() == ICounter.EMPTY) {
+                continue;
+            }
+
+            final int hits = line.getInstructionCounter().getCoveredCount() > 0 ? 1 : 0;
+            final ICounter branches = line.getBranchCounter();
+
+            writer.write(indent + "  <line number=\"" + nr + "\" hits=\"" + hits + "\"");
+            if (branches.getTotalCount() > 0) {
+                writer.write(" branch=\"true\" condition-coverage=\""
+                        + (branches.getCoveredCount() * 100 / branches.getTotalCount()) + "% ("
+                        + branches.getCoveredCount() + "/" + branches.getTotalCount() + ")\"");
+            } else {
+                writer.write(" branch=\"false\"");
+            }
+            writer.write("/>\n");
+        }
+        writer.write(indent + "</lines>\n");
+    }
+
+    private static String rates(final ICoverageNode node) {
+        return " line-rate=\"" + rate(node.getLineCounter()) + "\" branch-rate=\"" + rate(node.getBranchCounter())
+                + "\" complexity=\"" + node.getComplexityCounter().getTotalCount() + "\"";
+    }
+
+    private static String rate(final ICounter counter) {
+        if (counter.getTotalCount() == 0) {
+            // like Cobertura, nothing to cover is fully covered
+            return "1.0";
+        }
+        return String.valueOf(counter.getCoveredRatio());
+    }
+
+    private static String spaces(final int count) {
+        final StringBuilder sb = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            sb.append(' ');
+        }
+        return sb.toString();
+    }
+
+    private static String escape(final String value) {
+        final StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+            case '<':
+                sb.append("&lt;");
+                break;
+            case '>':
+                sb.append("&gt;");
+                break;
+            case '&':
+                sb.append("&amp;");
+                break;
+            case '"':
+                sb.append("&quot;");
+                break;
+            default:
+                sb.append(c);
+                break;
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression of report files.
+ */
+public enum Compression {
+    /**
+     * Write the file uncompressed.
+     */
+    NONE(null) {
+        @Override
+        OutputStream open(final File file) throws IOException {
+            return new BufferedOutputStream(new FileOutputStream(file));
+        }
+    },
+    /**
+     * Write the file compressed using GZIP.
+     */
+    GZIP(".gz") {
+        @Override
+        OutputStream open(final File file) throws IOException {
+            final OutputStream out = new FileOutputStream(file);
+            try {
+                return new BufferedOutputStream(new GZIPOutputStream(out, BUFFER_SIZE), BUFFER_SIZE);
+            } catch (final IOException e) {
+                out.close();
+                throw e;
+            }
+        }
+    };
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String suffix;
+
+    private Compression(final String suffix) {
+        this.suffix = suffix;
+    }
+
+    /**
+     * Open a file for writing.
+     *
+     * @param file
+     *            the file to write
+     * @return the stream, compressing its content
+     * @throws IOException
+     *             if the file cannot be created
+     */
+    abstract OutputStream open(File file) throws IOException;
+
+    /**
+     * Get the name of a file using this compression. <br>
+     * Appends the common file name suffix of the compression, unless the
+     * file name already ends with it.
+     *
+     * @param file
+     *            the uncompressed file name
+     * @return the file name to use
+     */
+    public File getFile(final File file) {
+        if (this.suffix == null || file.getName().endsWith(this.suffix)) {
+            return file;
+        }
+        return new File(file.getParentFile(), file.getName() + this.suffix);
+    }
+}
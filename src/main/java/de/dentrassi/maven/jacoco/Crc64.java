@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+/**
+ * The class IDs of Jacoco. <br>
+ * Jacoco identifies a class by the CRC64 checksum of its class file, but only
+ * calculates it internally. This is the same checksum, including the special
+ * case of early Java 9 class files, which are checksummed as Java 8 class
+ * files.
+ */
+final class Crc64 {
+
+    private static final long POLY64REV = 0xd800000000000000L;
+
+    private static final long[] LOOKUPTABLE;
+
+    private static final byte V1_8 = 52;
+
+    private static final byte V9 = 53;
+
+    static {
+        LOOKUPTABLE = new long[0x100];
+        for (int i = 0; i < 0x100; i++) {
+            long v = i;
+            for (int j = 0; j < 8; j++) {
+                if ((v & 1) == 1) {
+                    v = v >>> 1 ^ POLY64REV;
+                } else {
+                    v = v >>> 1;
+                }
+            }
+            LOOKUPTABLE[i] = v;
+        }
+    }
+
+    private Crc64() {
+    }
+
+    /**
+     * Calculate the class ID of a class file.
+     *
+     * @param bytes
+     *            the content of the class file
+     * @return the class ID, as used by the execution data
+     */
+    public static long classId(final byte[] bytes) {
+        if (bytes.length > 7 && bytes[6] == 0 && bytes[7] == V9) {
+            long sum = update(0, bytes, 0, 7);
+            sum = update(sum, V1_8);
+            return update(sum, bytes, 8, bytes.length);
+        }
+        return update(0, bytes, 0, bytes.length);
+    }
+
+    private static long update(final long sum, final byte b) {
+        final int lookupidx = ((int) sum ^ b) & 0xff;
+        return sum >>> 8 ^ LOOKUPTABLE[lookupidx];
+    }
+
+    private static long update(final long sum, final byte[] bytes, final int from, final int to) {
+        long result = sum;
+        for (int i = from; i < to; i++) {
+            result = update(result, bytes[i]);
+        }
+        return result;
+    }
+}
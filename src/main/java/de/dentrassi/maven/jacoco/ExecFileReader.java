@@ -0,0 +1,349 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import static java.lang.String.format;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.ISessionInfoVisitor;
+import org.jacoco.core.data.IncompatibleExecDataVersionException;
+import org.jacoco.core.data.SessionInfo;
+
+/**
+ * Reads execution data files through a large direct buffer. <br>
+ * This is a replacement of the {@link ExecutionDataReader} for files, reading
+ * the same format and reporting the same errors. Instead of decoding the file
+ * byte by byte from a stream, the file is read in large chunks, and the blocks
+ * are decoded from the buffer.
+ * <p>
+ * Execution data is decoded straight into an {@link ExecutionDataStore}. The
+ * probes of classes which are already contained in the store are merged while
+ * they are decoded, without creating a copy, and the probes of classes not
+ * passing the filter are skipped. Large files, containing many sessions of
+ * the same classes, mostly consist of such probes.
+ * </p>
+ * <p>
+ * The file is not memory mapped, mapped files can only be released by the
+ * garbage collector, which keeps them locked on some platforms, and are
+ * limited to 2 GB per mapping.
+ * </p>
+ */
+final class ExecFileReader {
+
+    /**
+     * The size of the buffer, which must hold the longest string.
+     */
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final File file;
+
+    private ISessionInfoVisitor sessionInfoVisitor;
+    private ExecutionDataStore executionData;
+    private Set<String> classFilter;
+
+    private int classCount;
+    private int loadedClassCount;
+
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private boolean eof;
+
+    private char[] chars = new char[256];
+
+    public ExecFileReader(final File file) {
+        this.file = file;
+    }
+
+    public void setSessionInfoVisitor(final ISessionInfoVisitor sessionInfoVisitor) {
+        this.sessionInfoVisitor = sessionInfoVisitor;
+    }
+
+    public void setExecutionDataStore(final ExecutionDataStore executionData) {
+        this.executionData = executionData;
+    }
+
+    /**
+     * Set the names of the classes to load.
+     *
+     * @param classFilter
+     *            the VM names of the classes, {@code null} to load all
+     *            classes
+     */
+    public void setClassFilter(final Set<String> classFilter) {
+        this.classFilter = classFilter;
+    }
+
+    /**
+     * Get the number of classes read.
+     *
+     * @return the number of execution data blocks
+     */
+    public int getClassCount() {
+        return this.classCount;
+    }
+
+    /**
+     * Get the number of classes loaded into the store.
+     *
+     * @return the number of execution data blocks passing the filter
+     */
+    public int getLoadedClassCount() {
+        return this.loadedClassCount;
+    }
+
+    /**
+     * Read the whole file, loading its content into the store.
+     *
+     * @throws IOException
+     *             if the file can't be read, or is not a valid execution
+     *             data file
+     * @throws IncompatibleExecDataVersionException
+     *             if the file uses a different version of the format
+     */
+    public void read() throws IOException {
+        try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ)) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            this.buffer.flip();
+            this.eof = false;
+
+            boolean first = true;
+            while (fill(1)) {
+                final byte type = this.buffer.get();
+                if (first && type != ExecutionDataWriter.BLOCK_HEADER) {
+                    throw new IOException("Invalid execution data file.");
+                }
+                first = false;
+                readBlock(type);
+            }
+        } finally {
+            this.channel = null;
+            this.buffer = null;
+        }
+    }
+
+    private void readBlock(final byte type) throws IOException {
+        switch (type) {
+        case ExecutionDataWriter.BLOCK_HEADER:
+            readHeader();
+            break;
+        case ExecutionDataWriter.BLOCK_SESSIONINFO:
+            readSessionInfo();
+            break;
+        case ExecutionDataWriter.BLOCK_EXECUTIONDATA:
+            readExecutionData();
+            break;
+        default:
+            throw new IOException(format("Unknown block type %x.", Byte.valueOf(type)));
+        }
+    }
+
+    private void readHeader() throws IOException {
+        require(4);
+        if (this.buffer.getChar() != ExecutionDataWriter.MAGIC_NUMBER) {
+            throw new IOException("Invalid execution data file.");
+        }
+        final char version = this.buffer.getChar();
+        if (version != ExecutionDataWriter.FORMAT_VERSION) {
+            throw new IncompatibleExecDataVersionException(version);
+        }
+    }
+
+    private void readSessionInfo() throws IOException {
+        if (this.sessionInfoVisitor == null) {
+            throw new IOException("No session info visitor.");
+        }
+        final String id = readUTF();
+        require(16);
+        final long start = this.buffer.getLong();
+        final long dump = this.buffer.getLong();
+        this.sessionInfoVisitor.visitSessionInfo(new SessionInfo(id, start, dump));
+    }
+
+    private void readExecutionData() throws IOException {
+        if (this.executionData == null) {
+            throw new IOException("No execution data store.");
+        }
+        require(8);
+        final long id = this.buffer.getLong();
+        final String name = readUTF();
+        final int length = readVarInt();
+
+        this.classCount++;
+        if (this.classFilter != null && !this.classFilter.contains(name)) {
+            skip((length + 7) / 8);
+            return;
+        }
+        this.loadedClassCount++;
+
+        final ExecutionData existing = this.executionData.get(id);
+        if (existing != null) {
+            existing.assertCompatibility(id, name, length);
+            readProbes(existing.getProbes());
+        } else {
+            final boolean[] probes = new boolean[length];
+            readProbes(probes);
+            this.executionData.put(new ExecutionData(id, name, probes));
+        }
+    }
+
+    private int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0;; shift += 7) {
+            require(1);
+            final int b = this.buffer.get() & 0xFF;
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Read a boolean array, merging it into existing probes. <br>
+     * Probes are only ever set, never cleared.
+     */
+    private void readProbes(final boolean[] probes) throws IOException {
+        int i = 0;
+        while (i < probes.length) {
+            // probe arrays may span chunks
+            require(1);
+            final int end = Math.min(probes.length, i + this.buffer.remaining() * 8);
+            while (i < end) {
+                final int b = this.buffer.get();
+                if (b == 0) {
+                    i = Math.min(end, i + 8);
+                } else if (end - i >= 8) {
+                    // without branches, probes are hardly predictable
+                    probes[i] |= (b & 0x01) != 0;
+                    probes[i + 1] |= (b & 0x02) != 0;
+                    probes[i + 2] |= (b & 0x04) != 0;
+                    probes[i + 3] |= (b & 0x08) != 0;
+                    probes[i + 4] |= (b & 0x10) != 0;
+                    probes[i + 5] |= (b & 0x20) != 0;
+                    probes[i + 6] |= (b & 0x40) != 0;
+                    probes[i + 7] |= (b & 0x80) != 0;
+                    i += 8;
+                } else {
+                    for (int bit = 0; i < end; i++, bit++) {
+                        probes[i] |= (b & 1 << bit) != 0;
+                    }
+                }
+            }
+        }
+    }
+
+    private void skip(final int bytes) throws IOException {
+        int remaining = bytes;
+        while (remaining > 0) {
+            require(1);
+            final int n = Math.min(remaining, this.buffer.remaining());
+            this.buffer.position(this.buffer.position() + n);
+            remaining -= n;
+        }
+    }
+
+    /**
+     * Read a string in the modified UTF-8 encoding of
+     * {@link java.io.DataInput#readUTF()}.
+     */
+    private String readUTF() throws IOException {
+        require(2);
+        final int length = this.buffer.getChar();
+        require(length);
+
+        if (this.chars.length < length) {
+            this.chars = new char[Math.max(length, this.chars.length * 2)];
+        }
+        final char[] chars = this.chars;
+        final ByteBuffer buffer = this.buffer;
+
+        int count = 0;
+        int i = 0;
+        while (i < length) {
+            final int b = buffer.get() & 0xFF;
+            i++;
+            if (b < 0x80) {
+                chars[count++] = (char) b;
+            } else if ((b & 0xE0) == 0xC0) {
+                if (i + 1 > length) {
+                    throw new UTFDataFormatException("malformed input: partial character at end");
+                }
+                final int b2 = buffer.get();
+                i++;
+                if ((b2 & 0xC0) != 0x80) {
+                    throw new UTFDataFormatException("malformed input around byte " + i);
+                }
+                chars[count++] = (char) ((b & 0x1F) << 6 | b2 & 0x3F);
+            } else if ((b & 0xF0) == 0xE0) {
+                if (i + 2 > length) {
+                    throw new UTFDataFormatException("malformed input: partial character at end");
+                }
+                final int b2 = buffer.get();
+                final int b3 = buffer.get();
+                i += 2;
+                if ((b2 & 0xC0) != 0x80 || (b3 & 0xC0) != 0x80) {
+                    throw new UTFDataFormatException("malformed input around byte " + (i - 1));
+                }
+                chars[count++] = (char) ((b & 0x0F) << 12 | (b2 & 0x3F) << 6 | b3 & 0x3F);
+            } else {
+                throw new UTFDataFormatException("malformed input around byte " + (i - 1));
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    /**
+     * Make sure the buffer contains a number of bytes.
+     *
+     * @throws EOFException
+     *             if the file ends before
+     */
+    private void require(final int bytes) throws IOException {
+        if (!fill(bytes)) {
+            throw new EOFException();
+        }
+    }
+
+    /**
+     * Try to fill the buffer with a number of bytes.
+     *
+     * @return {@code true} if the buffer contains the bytes, {@code false} if
+     *         the file ends before
+     */
+    private boolean fill(final int bytes) throws IOException {
+        if (this.buffer.remaining() >= bytes) {
+            return true;
+        }
+
+        this.buffer.compact();
+        while (!this.eof && this.buffer.position() < bytes) {
+            if (this.channel.read(this.buffer) < 0) {
+                this.eof = true;
+            }
+        }
+        this.buffer.flip();
+
+        return this.buffer.remaining() >= bytes;
+    }
+}
@@ -14,23 +14,71 @@ package de.dentrassi.maven.jacoco;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
 import org.apache.commons.collections.CollectionUtils;
-import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.MatchPatterns;
+import org.codehaus.plexus.util.SelectorUtils;
 import org.codehaus.plexus.util.StringUtils;
 
 /**
  * A file filter using includes/excludes patterns.
+ * <p>
+ * The patterns are compiled once, when the filter is created. Directories are
+ * walked in the same order, and with the same pattern semantics, as the plexus
+ * <code>DirectoryScanner</code>, with its default excludes, like
+ * <code>**&#47;.git/**</code>, always added to the excludes. Directories which
+ * cannot contain included files, or which are completely excluded by a pattern
+ * ending with <code>/**</code>, are skipped without being listed.
+ * </p>
  */
 public class FileFilter {
 
     private static final String DEFAULT_INCLUDES = "**";
     private static final String DEFAULT_EXCLUDES = "";
 
+    private static final String TREE_SUFFIX = File.separator + "**";
+
+    /**
+     * Receives the files found by {@link FileFilter#visitFiles(File, Visitor)}.
+     */
+    public interface Visitor {
+        /**
+         * Visit a matching file.
+         *
+         * @param name
+         *            the path of the file, relative to the scanned directory
+         * @param file
+         *            the file
+         * @throws IOException
+         *             if processing the file fails, this aborts the scan
+         */
+        void visitFile(String name, File file) throws IOException;
+    }
+
     private final List<String> includes;
     private final List<String> excludes;
 
+    private final MatchPatterns includePatterns;
+    private final MatchPatterns excludePatterns;
+    private final MatchPatterns excludedTrees;
+
     /**
      * Construct a new FileFilter
      *
@@ -42,6 +90,13 @@ public class FileFilter {
     public FileFilter(final List<String> includes, final List<String> excludes) {
         this.includes = includes;
         this.excludes = excludes;
+
+        final String[] includePatterns = normalizePatterns(getIncludes());
+        final String[] excludePatterns = withDefaultExcludes(normalizePatterns(getExcludes()));
+
+        this.includePatterns = MatchPatterns.from(includePatterns);
+        this.excludePatterns = MatchPatterns.from(excludePatterns);
+        this.excludedTrees = MatchPatterns.from(treePatterns(excludePatterns));
     }
 
     /**
@@ -54,7 +109,15 @@ public class FileFilter {
      *             if file system access fails
      */
     public List<String> getFileNames(final File directory) throws IOException {
-        return FileUtils.getFileNames(directory, getIncludes(), getExcludes(), false);
+        final List<String> result = new ArrayList<>();
+        visitFiles(directory, new Visitor() {
+
+            @Override
+            public void visitFile(final String name, final File file) {
+                result.add(name);
+            }
+        });
+        return result;
     }
 
     /**
@@ -67,7 +130,135 @@ public class FileFilter {
      *             if file system access fails
      */
     public List<File> getFiles(final File directory) throws IOException {
-        return FileUtils.getFiles(directory, getIncludes(), getExcludes());
+        final List<File> result = new ArrayList<>();
+        visitFiles(directory, new Visitor() {
+
+            @Override
+            public void visitFile(final String name, final File file) {
+                result.add(file);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns a list of files, scanning sub-directories in parallel. <br>
+     * The order of the files is the same as with {@link #getFiles(File)}.
+     *
+     * @param directory
+     *            the directory to scan
+     * @param pool
+     *            the pool to scan sub-directories with
+     * @return a list of files
+     * @throws IOException
+     *             if file system access fails
+     */
+    public List<File> getFiles(final File directory, final ForkJoinPool pool) throws IOException {
+        final Path base = directory.toPath();
+        final DirectoryTask task = new DirectoryTask(base, "", Collections.singletonList(directoryKey(base)));
+
+        try {
+            if (ForkJoinTask.inForkJoinPool()) {
+                return task.invoke();
+            }
+            return pool.submit(task).get();
+        } catch (final ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while scanning " + directory, e);
+        } catch (final UncheckedIO e) {
+            throw e.getCause();
+        }
+    }
+
+    private static IOException unwrap(final Throwable e) {
+        if (e instanceof UncheckedIO) {
+            return ((UncheckedIO) e).getCause();
+        }
+        if (e instanceof IOException) {
+            return (IOException) e;
+        }
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return new IOException(e);
+    }
+
+    /**
+     * Scan a directory, passing each matching file to the visitor as soon as
+     * it is found.
+     *
+     * @param directory
+     *            the directory to scan
+     * @param visitor
+     *            the visitor receiving the files
+     * @throws IOException
+     *             if file system access fails, or the visitor fails
+     */
+    public void visitFiles(final File directory, final Visitor visitor) throws IOException {
+        final Path base = directory.toPath();
+
+        Files.walkFileTree(base, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                new SimpleFileVisitor<Path>() {
+
+                    @Override
+                    public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) {
+                        if (dir.equals(base)) {
+                            return FileVisitResult.CONTINUE;
+                        }
+                        return scanDirectory(base.relativize(dir).toString()) ? FileVisitResult.CONTINUE
+                                : FileVisitResult.SKIP_SUBTREE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs)
+                            throws IOException {
+                        if (attrs.isRegularFile()) {
+                            final String name = base.relativize(file).toString();
+                            if (isIncluded(name)) {
+                                visitor.visitFile(name, file.toFile());
+                            }
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(final Path file, final IOException exc) {
+                        // like a directory which cannot be listed, or a file loop
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+    }
+
+    /**
+     * Test if a file is included.
+     *
+     * @param name
+     *            the path of the file, relative to the scanned directory
+     * @return {@code true} if the file matches the includes and doesn't match
+     *         the excludes
+     */
+    private boolean isIncluded(final String name) {
+        return this.includePatterns.matches(name, true) && !this.excludePatterns.matches(name, true);
+    }
+
+    /**
+     * Test if a directory has to be scanned.
+     *
+     * @param name
+     *            the path of the directory, relative to the scanned directory
+     * @return {@code true} if the directory may contain files which are
+     *         included
+     */
+    private boolean scanDirectory(final String name) {
+        if (this.excludedTrees.matches(name, true)) {
+            return false;
+        }
+        return isIncluded(name) || this.includePatterns.matchesPatternStart(name, true);
     }
 
     /**
@@ -95,4 +286,171 @@ public class FileFilter {
         }
         return pattern;
     }
+
+    /**
+     * Split and normalize patterns, like the plexus <code>FileUtils</code> and
+     * <code>DirectoryScanner</code> do.
+     */
+    private static String[] normalizePatterns(final String patterns) {
+        final String[] result = StringUtils.split(patterns, ",");
+        for (int i = 0; i < result.length; i++) {
+            result[i] = normalizePattern(result[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Add the default excludes, like
+     * <code>DirectoryScanner.addDefaultExcludes()</code> does.
+     */
+    private static String[] withDefaultExcludes(final String[] excludes) {
+        final String[] result = Arrays.copyOf(excludes, excludes.length + DirectoryScanner.DEFAULTEXCLUDES.length);
+        for (int i = 0; i < DirectoryScanner.DEFAULTEXCLUDES.length; i++) {
+            result[excludes.length + i] = normalizePattern(DirectoryScanner.DEFAULTEXCLUDES[i]);
+        }
+        return result;
+    }
+
+    private static String normalizePattern(final String pattern) {
+        String result = pattern.trim();
+
+        if (result.startsWith(SelectorUtils.REGEX_HANDLER_PREFIX)) {
+            return result;
+        }
+
+        result = result.replace('/', File.separatorChar).replace('\\', File.separatorChar);
+        if (result.endsWith(File.separator)) {
+            result += "**";
+        }
+        return result;
+    }
+
+    /**
+     * Get the directories matched by patterns which exclude everything below
+     * a directory.
+     *
+     * @param excludes
+     *            the normalized exclude patterns
+     * @return the patterns matching the excluded directories
+     */
+    private static List<String> treePatterns(final String[] excludes) {
+        final List<String> result = new ArrayList<>();
+        for (final String pattern : excludes) {
+            if (pattern.startsWith(SelectorUtils.REGEX_HANDLER_PREFIX)
+                    || pattern.startsWith(SelectorUtils.ANT_HANDLER_PREFIX)) {
+                continue;
+            }
+            if (pattern.endsWith(TREE_SUFFIX) && pattern.length() > TREE_SUFFIX.length()) {
+                result.add(pattern.substring(0, pattern.length() - TREE_SUFFIX.length()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the key identifying a directory, following links.
+     *
+     * @param directory
+     *            the directory
+     * @return the file key, or the real path if the file system has no file
+     *         keys, or {@code null} if the directory cannot be accessed
+     */
+    private static Object directoryKey(final Path directory) {
+        try {
+            final Object key = Files.readAttributes(directory, BasicFileAttributes.class).fileKey();
+            return key != null ? key : directory.toRealPath();
+        } catch (final IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Scans a directory, forking a task for each sub-directory. <br>
+     * Like {@link #visitFiles(File, Visitor)}, links are followed, but a
+     * directory which is one of its own ancestors is skipped, so that a link
+     * loop doesn't get walked endlessly.
+     */
+    private class DirectoryTask extends RecursiveTask<List<File>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+        private final String prefix;
+        private final List<Object> ancestors;
+
+        /**
+         * Create a new task.
+         *
+         * @param directory
+         *            the directory to scan
+         * @param prefix
+         *            the relative path of the directory, including a trailing
+         *            separator
+         * @param ancestors
+         *            the keys of the directory itself and of its parent
+         *            directories
+         */
+        public DirectoryTask(final Path directory, final String prefix, final List<Object> ancestors) {
+            this.directory = directory;
+            this.prefix = prefix;
+            this.ancestors = ancestors;
+        }
+
+        @Override
+        protected List<File> compute() {
+            // keep files and sub-directories in the order of the directory
+
+            final List<Object> entries = new ArrayList<>();
+
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory)) {
+                for (final Path path : stream) {
+                    final String name = this.prefix + path.getFileName().toString();
+                    if (Files.isDirectory(path)) {
+                        if (scanDirectory(name)) {
+                            final Object key = directoryKey(path);
+                            if (key == null || this.ancestors.contains(key)) {
+                                // like a directory which cannot be listed, or a link loop
+                                continue;
+                            }
+                            final List<Object> ancestors = new ArrayList<>(this.ancestors.size() + 1);
+                            ancestors.addAll(this.ancestors);
+                            ancestors.add(key);
+                            final DirectoryTask task = new DirectoryTask(path, name + File.separator, ancestors);
+                            task.fork();
+                            entries.add(task);
+                        }
+                    } else if (Files.isRegularFile(path) && isIncluded(name)) {
+                        entries.add(path.toFile());
+                    }
+                }
+            } catch (final IOException e) {
+                if (this.prefix.isEmpty()) {
+                    throw new UncheckedIO(e);
+                }
+                // like a directory which cannot be listed
+            }
+
+            final List<File> result = new ArrayList<>();
+            for (final Object entry : entries) {
+                if (entry instanceof DirectoryTask) {
+                    result.addAll(((DirectoryTask) entry).join());
+                } else {
+                    result.add((File) entry);
+                }
+            }
+            return result;
+        }
+    }
+
+    private static class UncheckedIO extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public UncheckedIO(final IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
 }
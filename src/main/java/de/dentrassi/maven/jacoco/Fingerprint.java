@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Properties;
+
+/**
+ * A fingerprint of the inputs of a report. <br>
+ * The fingerprint is a SHA-256 hash over all values and file contents which
+ * have been added. It is stored in a small manifest file next to the report,
+ * so that a later execution can detect that its inputs didn't change.
+ */
+final class Fingerprint {
+
+    private static final String KEY = "fingerprint";
+
+    private final MessageDigest digest;
+
+    private final byte[] buffer = new byte[64 * 1024];
+
+    public Fingerprint() {
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    /**
+     * Add a value.
+     *
+     * @param value
+     *            the value, may be {@code null}
+     * @return this instance
+     */
+    public Fingerprint add(final Object value) {
+        if (value == null) {
+            addLength(-1);
+        } else {
+            final byte[] data = value.toString().getBytes(UTF_8);
+            addLength(data.length);
+            this.digest.update(data);
+        }
+        return this;
+    }
+
+    /**
+     * Add a collection of values.
+     *
+     * @param values
+     *            the values, may be {@code null}
+     * @return this instance
+     */
+    public Fingerprint addAll(final Collection<?> values) {
+        if (values == null) {
+            addLength(-1);
+        } else {
+            addLength(values.size());
+            for (final Object value : values) {
+                add(value);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Add the path and the content of a file.
+     *
+     * @param file
+     *            the file to add
+     * @return this instance
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public Fingerprint addFile(final File file) throws IOException {
+        add(file.getAbsolutePath());
+        addLength(file.length());
+        try (InputStream in = new FileInputStream(file)) {
+            int len;
+            while ((len = in.read(this.buffer)) > 0) {
+                this.digest.update(this.buffer, 0, len);
+            }
+        }
+        return this;
+    }
+
+    private void addLength(final long length) {
+        this.digest.update(ByteBuffer.allocate(8).putLong(length).array());
+    }
+
+    /**
+     * Complete the fingerprint. <br>
+     * The instance must not be used afterwards.
+     *
+     * @return the fingerprint as hex string
+     */
+    public String complete() {
+        final StringBuilder sb = new StringBuilder();
+        for (final byte b : this.digest.digest()) {
+            sb.append(String.format("%02x", Integer.valueOf(b & 0xFF)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Read the fingerprint from a manifest file.
+     *
+     * @param file
+     *            the manifest file
+     * @return the fingerprint, or {@code null} if the file doesn't exist or
+     *         cannot be read
+     */
+    public static String read(final File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        final Properties p = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            p.load(in);
+        } catch (final IOException e) {
+            return null;
+        }
+        return p.getProperty(KEY);
+    }
+
+    /**
+     * Write the fingerprint to a manifest file.
+     *
+     * @param file
+     *            the manifest file
+     * @param fingerprint
+     *            the fingerprint
+     * @throws IOException
+     *             if writing the file fails
+     */
+    public static void write(final File file, final String fingerprint) throws IOException {
+        final Properties p = new Properties();
+        p.setProperty(KEY, fingerprint);
+        try (OutputStream out = new FileOutputStream(file)) {
+            p.store(out, "jacoco-extras report fingerprint");
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+
+/**
+ * Tracks the peak heap usage while it is active. <br>
+ * The heap usage is highest right before a garbage collection, so the
+ * notifications of the garbage collectors are used to take the heap usage
+ * before each collection into account. The peak usage of the memory pools is
+ * neither used nor reset, as it is shared by everything running in the JVM.
+ * <p>
+ * A single listener is registered with the garbage collectors, once, and
+ * updates all active trackers. Notifications are delivered asynchronously, so
+ * a collection right before the end of a tracker may be missed. If the JVM
+ * doesn't send garbage collection notifications, only the heap usage at the
+ * start and the end is known.
+ * </p>
+ */
+final class HeapPeak {
+
+    private static final Set<HeapPeak> ACTIVE = Collections
+            .newSetFromMap(new ConcurrentHashMap<HeapPeak, Boolean>());
+
+    private static boolean listening;
+
+    private final long startUptime;
+    private final long startHeap;
+
+    private long peak;
+
+    private HeapPeak() {
+        this.startUptime = ManagementFactory.getRuntimeMXBean().getUptime();
+        this.startHeap = usedHeap();
+        this.peak = this.startHeap;
+    }
+
+    /**
+     * Start tracking the peak heap usage.
+     *
+     * @return the new tracker, which should be stopped by calling
+     *         {@link #end()}
+     */
+    public static HeapPeak start() {
+        listen();
+        final HeapPeak result = new HeapPeak();
+        ACTIVE.add(result);
+        return result;
+    }
+
+    /**
+     * Stop tracking.
+     *
+     * @return the peak heap usage while tracking, minus the heap usage at the
+     *         start, in bytes
+     */
+    public long end() {
+        ACTIVE.remove(this);
+        update(usedHeap());
+        synchronized (this) {
+            return Math.max(0, this.peak - this.startHeap);
+        }
+    }
+
+    private synchronized void update(final long used) {
+        this.peak = Math.max(this.peak, used);
+    }
+
+    private static synchronized void listen() {
+        if (listening) {
+            return;
+        }
+        listening = true;
+
+        final NotificationListener listener = new NotificationListener() {
+
+            @Override
+            public void handleNotification(final Notification notification, final Object handback) {
+                if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION
+                        .equals(notification.getType())) {
+                    collected(GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData())
+                            .getGcInfo());
+                }
+            }
+        };
+
+        for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter) {
+                ((NotificationEmitter) gc).addNotificationListener(listener, null, null);
+            }
+        }
+    }
+
+    private static void collected(final GcInfo info) {
+        if (ACTIVE.isEmpty()) {
+            return;
+        }
+
+        final Set<String> heapPools = heapPools();
+        long used = 0;
+        for (final Map.Entry<String, MemoryUsage> entry : info.getMemoryUsageBeforeGc().entrySet()) {
+            if (heapPools.contains(entry.getKey())) {
+                used += entry.getValue().getUsed();
+            }
+        }
+
+        for (final HeapPeak tracker : ACTIVE) {
+            // skip notifications of collections which happened before tracking
+            if (info.getStartTime() >= tracker.startUptime) {
+                tracker.update(used);
+            }
+        }
+    }
+
+    private static Set<String> heapPools() {
+        final Set<String> result = new HashSet<>();
+        for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                result.add(pool.getName());
+            }
+        }
+        return result;
+    }
+
+    private static long usedHeap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import static org.apache.maven.plugins.annotations.LifecyclePhase.VERIFY;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Create an HTML report of a project including its dependencies. <br>
+ * The bundles are the same as the ones of the <code>xml</code> goal. If more
+ * than one thread is configured, the pages of the packages are rendered
+ * concurrently.
+ *
+ * @since 0.1.7
+ */
+@Mojo(defaultPhase = VERIFY, name = "html", requiresProject = true, inheritByDefault = true, requiresDependencyResolution = ResolutionScope.TEST, threadSafe = true)
+public class HtmlMojo extends AbstractReportMojo {
+
+    /**
+     * The directory to write the report to.
+     */
+    @Parameter(property = PROP_PREFIX
+            + "htmlDirectory", defaultValue = "${project.reporting.outputDirectory}/jacoco-extras", required = true)
+    private File outputDirectory;
+
+    /**
+     * The title of the report.
+     */
+    @Parameter(property = PROP_PREFIX + "title", defaultValue = "${project.name}")
+    private String title;
+
+    /**
+     * The footer text of the pages.
+     */
+    @Parameter(property = PROP_PREFIX + "footer")
+    private String footer;
+
+    public void setOutputDirectory(final File outputDirectory) {
+        this.outputDirectory = outputDirectory;
+    }
+
+    public void setTitle(final String title) {
+        this.title = title;
+    }
+
+    public void setFooter(final String footer) {
+        this.footer = footer;
+    }
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (this.skip) {
+            return;
+        }
+
+        if (this.streaming) {
+            throw new MojoExecutionException(
+                    "The html goal doesn't support streaming, pages require the complete coverage of a bundle");
+        }
+
+        final List<File> execFiles = resolveExecFiles(this.execFile, this.execFiles);
+        if (execFiles.isEmpty()) {
+            getLog().info("Skipping report. No execution data found.");
+            return;
+        }
+
+        final List<MavenProject> projects = new ArrayList<>();
+        projects.add(this.project);
+        projects.addAll(findDependencies(this.project));
+
+        try (final ReportSupport report = createReportSupport()) {
+            applyChangedClasses(report, projects);
+            if (this.filterExecutionData) {
+                report.filterExecutionData(projects, this.includes, this.excludes);
+            }
+            report.loadExecutionData(execFiles);
+
+            this.outputDirectory.mkdirs();
+            report.addHtmlFormatter(this.outputDirectory, "UTF-8", this.footer, Locale.getDefault());
+            writeReport(report, projects, this.title != null ? this.title : this.project.getArtifactId());
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Failed to create HTML report", e);
+        }
+    }
+}
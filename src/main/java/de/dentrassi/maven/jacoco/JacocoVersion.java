@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import org.jacoco.core.JaCoCo;
+
+/**
+ * The version of Jacoco the plugin is built with. <br>
+ * Some formatters re-use internal classes of the Jacoco report, which change
+ * between versions of Jacoco without notice. They require exactly the version
+ * of Jacoco the plugin is built with, and check it before writing anything,
+ * instead of failing, or writing broken reports, later on.
+ */
+final class JacocoVersion {
+
+    private static final String BUILD_VERSION = loadBuildVersion();
+
+    private JacocoVersion() {
+    }
+
+    private static String loadBuildVersion() {
+        final Properties p = new Properties();
+        try (InputStream in = JacocoVersion.class.getResourceAsStream("jacoco.properties")) {
+            if (in != null) {
+                p.load(in);
+            }
+        } catch (final IOException e) {
+            // handled as unknown version
+        }
+        return p.getProperty("version");
+    }
+
+    /**
+     * Get the version of Jacoco the plugin is built with.
+     *
+     * @return the version, {@code null} if it is unknown
+     */
+    public static String getBuildVersion() {
+        return BUILD_VERSION;
+    }
+
+    /**
+     * Check that the version of Jacoco in use is the one the plugin is built
+     * with.
+     *
+     * @param feature
+     *            the feature requiring the internal classes, used for the
+     *            error message
+     * @throws IllegalStateException
+     *             if a different version of Jacoco is in use
+     */
+    public static void requireBuildVersion(final String feature) {
+        // JaCoCo.VERSION contains a build qualifier
+        if (BUILD_VERSION != null && (JaCoCo.VERSION.equals(BUILD_VERSION)
+                || JaCoCo.VERSION.startsWith(BUILD_VERSION + "."))) {
+            return;
+        }
+        throw new IllegalStateException(format(
+                "%s requires Jacoco %s, the version the plugin is built with, but Jacoco %s is in use. "
+                        + "It uses internal classes of Jacoco, which change between versions.",
+                feature, BUILD_VERSION, JaCoCo.VERSION));
+    }
+}
@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.ILine;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.analysis.IPackageCoverage;
+import org.jacoco.core.analysis.ISourceFileCoverage;
+import org.jacoco.core.analysis.ISourceNode;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.report.IReportGroupVisitor;
+import org.jacoco.report.IReportVisitor;
+import org.jacoco.report.ISourceFileLocator;
+
+/**
+ * A formatter writing LCOV tracefiles. <br>
+ * A record is written for each source file, as soon as its package is
+ * visited. Jacoco doesn't count executions, so the hit count of a covered line
+ * or method is always one. Branches are reported per line, the number of
+ * taken branches is known, but not which of them were taken.
+ */
+final class LcovFormatter {
+
+    /**
+     * Create a visitor writing the report.
+     *
+     * @param output
+     *            the output stream to write to
+     * @return the report visitor
+     */
+    public IReportVisitor createVisitor(final OutputStream output) {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(output, UTF_8));
+
+        return new IReportVisitor() {
+
+            @Override
+            public void visitInfo(final List<SessionInfo> sessionInfos,
+                    final Collection<ExecutionData> executionData) {
+            }
+
+            @Override
+            public void visitBundle(final IBundleCoverage bundle, final ISourceFileLocator locator)
+                    throws IOException {
+                for (final IPackageCoverage pkg : bundle.getPackages()) {
+                    writePackage(writer, pkg, locator);
+                }
+            }
+
+            @Override
+            public IReportGroupVisitor visitGroup(final String name) {
+                return this;
+            }
+
+            @Override
+            public void visitEnd() throws IOException {
+                writer.close();
+            }
+        };
+    }
+
+    private void writePackage(final Writer writer, final IPackageCoverage pkg, final ISourceFileLocator locator)
+            throws IOException {
+        final Map<String, List<IMethodCoverage>> methods = new HashMap<>();
+        final Map<IMethodCoverage, String> names = new HashMap<>();
+
+        for (final IClassCoverage c : pkg.getClasses()) {
+            if (c.getSourceFileName() == null) {
+                continue;
+            }
+            List<IMethodCoverage> list = methods.get(c.getSourceFileName());
+            if (list == null) {
+                list = new ArrayList<>();
+                methods.put(c.getSourceFileName(), list);
+            }
+            for (final IMethodCoverage m : c.getMethods()) {
+                list.add(m);
+                names.put(m, c.getName().replace('/', '.') + "." + m.getName() + m.getDesc());
+            }
+        }
+
+        for (final ISourceFileCoverage source : pkg.getSourceFiles()) {
+            final List<IMethodCoverage> sourceMethods = methods.get(source.getName());
+            writeSourceFile(writer, source, resolve(locator, source.getPackageName(), source.getName()),
+                    sourceMethods != null ? sourceMethods : new ArrayList<IMethodCoverage>(), names);
+        }
+    }
+
+    private void writeSourceFile(final Writer writer, final ISourceFileCoverage source, final String path,
+            final List<IMethodCoverage> methods, final Map<IMethodCoverage, String> names) throws IOException {
+
+        writer.write("TN:\n");
+        writer.write("SF:" + path + "\n");
+
+        int functions = 0;
+        int functionsHit = 0;
+        for (final IMethodCoverage m : methods) {
+            if (m.getFirstLine() == ISourceNode.UNKNOWN_LINE) {
+                continue;
+            }
+            writer.write("FN:" + m.getFirstLine() + "," + names.get(m) + "\n");
+        }
+        for (final IMethodCoverage m : methods) {
+            if (m.getFirstLine() == ISourceNode.UNKNOWN_LINE) {
+                continue;
+            }
+            final boolean hit = m.getMethodCounter().getCoveredCount() > 0;
+            writer.write("FNDA:" + (hit ? 1 : 0) + "," + names.get(m) + "\n");
+            functions++;
+            if (hit) {
+                functionsHit++;
+            }
+        }
+        writer.write("FNF:" + functions + "\n");
+        writer.write("FNH:" + functionsHit + "\n");
+
+        int branches = 0;
+        int branchesHit = 0;
+        int lines = 0;
+        int linesHit = 0;
+
+        final StringBuilder lineRecords = new StringBuilder();
+
+        if (source.getFirstLine() != ISourceNode.UNKNOWN_LINE) {
+            for (int nr = source.getFirstLine(); nr <= source.getLastLine(); nr++) {
+                final ILine line = source.getLine(nr);
+                if (line.getStatus() == ICounter.EMPTY) {
+                    continue;
+                }
+
+                final boolean executed = line.getInstructionCounter().getCoveredCount() > 0;
+
+                final ICounter branch = line.getBranchCounter();
+                for (int i = 0; i < branch.getTotalCount(); i++) {
+                    final String taken;
+                    if (!executed) {
+                        taken = "-";
+                    } else if (i < branch.getCoveredCount()) {
+                        taken = "1";
+                    } else {
+                        taken = "0";
+                    }
+                    writer.write("BRDA:" + nr + ",0," + i + "," + taken + "\n");
+                }
+                branches += branch.getTotalCount();
+                branchesHit += branch.getCoveredCount();
+
+                lineRecords.append("DA:").append(nr).append(',').append(executed ? 1 : 0).append('\n');
+                lines++;
+                if (executed) {
+                    linesHit++;
+                }
+            }
+        }
+
+        writer.write("BRF:" + branches + "\n");
+        writer.write("BRH:" + branchesHit + "\n");
+        writer.write(lineRecords.toString());
+        writer.write("LF:" + lines + "\n");
+        writer.write("LH:" + linesHit + "\n");
+        writer.write("end_of_record\n");
+    }
+
+    /**
+     * Resolve the path of a source file. <br>
+     * Source files are looked up in the index of the locator, files which are
+     * not found are written relative to their source root.
+     */
+    private static String resolve(final ISourceFileLocator locator, final String packageName, final String fileName)
+            throws IOException {
+        if (locator instanceof SourceFileIndex.Locator) {
+            final File file = ((SourceFileIndex.Locator) locator).getFile(packageName, fileName);
+            if (file != null) {
+                return file.getAbsolutePath();
+            }
+        }
+        return packageName.isEmpty() ? fileName : packageName + "/" + fileName;
+    }
+}
@@ -0,0 +1,278 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Timing and memory metrics of a report run. <br>
+ * The metrics consist of a sequence of phases, like loading the execution data
+ * or processing the bundles, and of the metrics of each analyzed bundle.
+ * <p>
+ * The heap delta of a phase or a bundle is the peak heap usage while it is
+ * running, minus the heap usage at its start, see {@link HeapPeak}. The
+ * figures are approximate: they include garbage which had not yet been
+ * collected, and the heap is shared with everything else running in the JVM,
+ * like other bundles analyzed concurrently, or other modules of a parallel
+ * build.
+ * </p>
+ */
+final class Metrics {
+
+    private final List<Phase> phases = Collections.synchronizedList(new ArrayList<Phase>());
+    private final List<Bundle> bundles = Collections.synchronizedList(new ArrayList<Bundle>());
+
+    /**
+     * Start a new phase. <br>
+     * Phases are expected to run one after the other.
+     *
+     * @param name
+     *            the name of the phase
+     * @return the new phase, which must be ended by calling
+     *         {@link Phase#end()}
+     */
+    public Phase startPhase(final String name) {
+        final Phase phase = new Phase(name);
+        this.phases.add(phase);
+        return phase;
+    }
+
+    /**
+     * Start recording the metrics of a bundle.
+     *
+     * @param name
+     *            the name of the bundle
+     * @return the metrics of the bundle
+     */
+    public static Bundle startBundle(final String name) {
+        return new Bundle(name);
+    }
+
+    /**
+     * Add the metrics of an analyzed bundle.
+     *
+     * @param bundle
+     *            the bundle metrics
+     */
+    public void addBundle(final Bundle bundle) {
+        this.bundles.add(bundle);
+    }
+
+    public long getBundleClasses() {
+        long result = 0;
+        synchronized (this.bundles) {
+            for (final Bundle bundle : this.bundles) {
+                result += bundle.classes;
+            }
+        }
+        return result;
+    }
+
+    public long getBundleBytes() {
+        long result = 0;
+        synchronized (this.bundles) {
+            for (final Bundle bundle : this.bundles) {
+                result += bundle.bytes;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Log a summary of the metrics.
+     *
+     * @param log
+     *            the log to write to
+     */
+    public void log(final Log log) {
+        long scan = 0;
+        long analyze = 0;
+        long write = 0;
+
+        synchronized (this.bundles) {
+            for (final Bundle bundle : this.bundles) {
+                scan += bundle.scanTime;
+                analyze += bundle.analyzeTime;
+                write += bundle.writeTime;
+            }
+        }
+
+        synchronized (this.phases) {
+            for (final Phase phase : this.phases) {
+                log.info(format("Phase %-10s %8s ms, %6s classes, %10s bytes, peak heap delta %s MB", phase.name,
+                        Long.valueOf(toMillis(phase.duration)), Long.valueOf(phase.classes),
+                        Long.valueOf(phase.bytes), Long.valueOf(phase.heapDelta / (1024L * 1024L))));
+            }
+        }
+
+        log.info(format("Bundles: %s, scanning %s ms, analyzing %s ms, writing %s ms (summed over all threads)",
+                Integer.valueOf(this.bundles.size()), Long.valueOf(toMillis(scan)), Long.valueOf(toMillis(analyze)),
+                Long.valueOf(toMillis(write))));
+    }
+
+    /**
+     * Write the metrics as JSON file.
+     *
+     * @param file
+     *            the file to write to
+     * @throws IOException
+     *             if writing fails
+     */
+    public void write(final File file) throws IOException {
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), UTF_8))) {
+            out.write("{\n  \"phases\": [");
+            synchronized (this.phases) {
+                String sep = "\n";
+                for (final Phase phase : this.phases) {
+                    out.write(sep);
+                    sep = ",\n";
+                    out.write(format(
+                            "    { \"name\": %s, \"timeMillis\": %s, \"classes\": %s, \"bytes\": %s, \"peakHeapDelta\": %s }",
+                            Json.quote(phase.name), Long.valueOf(toMillis(phase.duration)),
+                            Long.valueOf(phase.classes), Long.valueOf(phase.bytes), Long.valueOf(phase.heapDelta)));
+                }
+            }
+            out.write("\n  ],\n  \"bundles\": [");
+            synchronized (this.bundles) {
+                String sep = "\n";
+                for (final Bundle bundle : this.bundles) {
+                    out.write(sep);
+                    sep = ",\n";
+                    out.write(format(
+                            "    { \"name\": %s, \"scanMillis\": %s, \"analyzeMillis\": %s, \"writeMillis\": %s, \"classes\": %s, \"bytes\": %s, \"peakHeapDelta\": %s }",
+                            Json.quote(bundle.name), Long.valueOf(toMillis(bundle.scanTime)),
+                            Long.valueOf(toMillis(bundle.analyzeTime)), Long.valueOf(toMillis(bundle.writeTime)),
+                            Long.valueOf(bundle.classes), Long.valueOf(bundle.bytes), Long.valueOf(bundle.heapDelta)));
+                }
+            }
+            out.write("\n  ]\n}\n");
+        }
+    }
+
+    private static long toMillis(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * A phase of the report run.
+     */
+    public static final class Phase {
+        private final String name;
+        private final long start;
+        private final HeapPeak heap;
+
+        private long duration;
+        private long classes;
+        private long bytes;
+        private long heapDelta;
+
+        private Phase(final String name) {
+            this.name = name;
+            this.heap = HeapPeak.start();
+            this.start = System.nanoTime();
+        }
+
+        /**
+         * Add to the amount of processed data.
+         *
+         * @param classes
+         *            the number of classes
+         * @param bytes
+         *            the number of bytes
+         */
+        public void add(final long classes, final long bytes) {
+            this.classes += classes;
+            this.bytes += bytes;
+        }
+
+        /**
+         * End the phase.
+         */
+        public void end() {
+            this.duration = System.nanoTime() - this.start;
+            this.heapDelta = this.heap.end();
+        }
+    }
+
+    /**
+     * The metrics of an analyzed bundle.
+     */
+    public static final class Bundle {
+        private final String name;
+        private final HeapPeak heap;
+
+        private long mark;
+
+        private long scanTime;
+        private long analyzeTime;
+        private long writeTime;
+        private long classes;
+        private long bytes;
+        private long heapDelta;
+
+        private Bundle(final String name) {
+            this.name = name;
+            this.heap = HeapPeak.start();
+            this.mark = System.nanoTime();
+        }
+
+        /**
+         * Mark the end of scanning for class files.
+         *
+         * @param files
+         *            the files which have been found
+         */
+        public void scanned(final List<File> files) {
+            final long now = System.nanoTime();
+            this.scanTime = now - this.mark;
+            for (final File file : files) {
+                this.bytes += file.length();
+            }
+            this.mark = System.nanoTime();
+        }
+
+        /**
+         * Mark the end of analysis.
+         *
+         * @param classes
+         *            the number of analyzed classes
+         */
+        public void analyzed(final int classes) {
+            this.analyzeTime = System.nanoTime() - this.mark;
+            this.classes = classes;
+            this.heapDelta = this.heap.end();
+        }
+
+        /**
+         * Add the time required to write the bundle.
+         *
+         * @param nanos
+         *            the time in nanoseconds
+         */
+        public void written(final long nanos) {
+            this.writeTime += nanos;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.analysis.ICoverageNode;
+import org.jacoco.core.analysis.IPackageCoverage;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.report.IMultiReportOutput;
+import org.jacoco.report.IReportGroupVisitor;
+import org.jacoco.report.IReportVisitor;
+import org.jacoco.report.ISourceFileLocator;
+import org.jacoco.report.html.HTMLFormatter;
+import org.jacoco.report.internal.AbstractGroupVisitor;
+import org.jacoco.report.internal.ReportOutputFolder;
+import org.jacoco.report.internal.html.HTMLElement;
+import org.jacoco.report.internal.html.ILinkable;
+import org.jacoco.report.internal.html.index.ElementIndex;
+import org.jacoco.report.internal.html.index.IIndexUpdate;
+import org.jacoco.report.internal.html.page.GroupPage;
+import org.jacoco.report.internal.html.page.PackagePage;
+import org.jacoco.report.internal.html.page.ReportPage;
+import org.jacoco.report.internal.html.page.SessionsPage;
+import org.jacoco.report.internal.html.page.TablePage;
+import org.jacoco.report.internal.html.resources.Resources;
+import org.jacoco.report.internal.html.table.Table;
+
+/**
+ * An HTML formatter rendering the packages of a bundle concurrently. <br>
+ * The pages of a package, its classes and its source files, are rendered by
+ * the executor, one task per package. The pages of the bundle and its groups
+ * are rendered by the visiting thread, once all packages of the bundle are
+ * finished. The report is the same as the one of the {@link HTMLFormatter}.
+ * <p>
+ * The pages of Jacoco are not meant to be rendered concurrently. Links to the
+ * shared pages are resolved before rendering any package, tables are created
+ * per thread, and updates to the shared resources and class index are
+ * synchronized.
+ * </p>
+ * <p>
+ * The page tree is re-built from internal classes of the Jacoco report, so the
+ * formatter requires the version of Jacoco the plugin is built with.
+ * </p>
+ */
+final class ParallelHtmlFormatter extends HTMLFormatter {
+
+    private final ExecutorService executor;
+
+    private Resources resources;
+    private ElementIndex index;
+    private IIndexUpdate indexUpdate;
+    private SessionsPage sessionsPage;
+
+    private final ThreadLocal<Table> tables = new ThreadLocal<Table>() {
+
+        @Override
+        protected Table initialValue() {
+            // the columns of a table hold number formats
+            final HTMLFormatter formatter = new HTMLFormatter();
+            formatter.setLocale(getLocale());
+            return formatter.getTable();
+        }
+    };
+
+    public ParallelHtmlFormatter(final ExecutorService executor) {
+        JacocoVersion.requireBuildVersion("The parallel HTML report");
+        this.executor = executor;
+    }
+
+    @Override
+    public Resources getResources() {
+        return this.resources;
+    }
+
+    @Override
+    public Table getTable() {
+        return this.tables.get();
+    }
+
+    @Override
+    public ILinkable getSessionsPage() {
+        return this.sessionsPage;
+    }
+
+    @Override
+    public IIndexUpdate getIndexUpdate() {
+        return this.indexUpdate;
+    }
+
+    @Override
+    public IReportVisitor createVisitor(final IMultiReportOutput output) throws IOException {
+        final ReportOutputFolder root = new ReportOutputFolder(output);
+
+        this.resources = new SynchronizedResources(root);
+        this.resources.copyResources();
+
+        final ElementIndex index = new ElementIndex(root);
+        this.index = index;
+        this.indexUpdate = new IIndexUpdate() {
+
+            @Override
+            public void addClass(final ILinkable link, final long classid) {
+                synchronized (index) {
+                    index.addClass(link, classid);
+                }
+            }
+        };
+
+        return new IReportVisitor() {
+
+            private List<SessionInfo> sessionInfos = Collections.emptyList();
+            private Collection<ExecutionData> executionData = Collections.emptyList();
+
+            private GroupVisitor groupVisitor;
+
+            @Override
+            public void visitInfo(final List<SessionInfo> sessionInfos, final Collection<ExecutionData> executionData)
+                    throws IOException {
+                this.sessionInfos = sessionInfos;
+                this.executionData = executionData;
+            }
+
+            @Override
+            public void visitBundle(final IBundleCoverage bundle, final ISourceFileLocator locator)
+                    throws IOException {
+                final BundlePage page = new BundlePage(bundle, null, root);
+                createSessionsPage(page);
+                renderBundle(bundle, page, locator);
+            }
+
+            @Override
+            public IReportGroupVisitor visitGroup(final String name) throws IOException {
+                this.groupVisitor = new GroupVisitor(null, root, name);
+                createSessionsPage(this.groupVisitor.page);
+                return this.groupVisitor;
+            }
+
+            private void createSessionsPage(final ReportPage rootPage) {
+                ParallelHtmlFormatter.this.sessionsPage = new SessionsPage(this.sessionInfos, this.executionData,
+                        ParallelHtmlFormatter.this.index, rootPage, root, ParallelHtmlFormatter.this);
+                ParallelHtmlFormatter.this.sessionsPage.getLink(root);
+            }
+
+            @Override
+            public void visitEnd() throws IOException {
+                if (this.groupVisitor != null) {
+                    this.groupVisitor.visitEnd();
+                }
+                ParallelHtmlFormatter.this.sessionsPage.render();
+                output.close();
+            }
+        };
+    }
+
+    /**
+     * Render the pages of a bundle. <br>
+     * The packages are rendered by the executor, the page of the bundle is
+     * rendered by the calling thread, after all packages are finished.
+     */
+    private void renderBundle(final IBundleCoverage bundle, final BundlePage page, final ISourceFileLocator locator)
+            throws IOException {
+
+        final List<PackagePage> packagePages = new ArrayList<>();
+        for (final IPackageCoverage pkg : bundle.getPackages()) {
+            if (!pkg.containsCode()) {
+                continue;
+            }
+            final String name = pkg.getName().isEmpty() ? "default" : pkg.getName().replace('/', '.');
+            final PackagePage packagePage = new PackagePage(pkg, page, locator, page.outputFolder.subFolder(name),
+                    this);
+            packagePages.add(packagePage);
+        }
+
+        final List<Future<Void>> tasks = new ArrayList<>(packagePages.size());
+        try {
+            for (final PackagePage packagePage : packagePages) {
+                tasks.add(this.executor.submit(new Callable<Void>() {
+
+                    @Override
+                    public Void call() throws IOException {
+                        packagePage.render();
+                        return null;
+                    }
+                }));
+            }
+            for (final Future<Void> task : tasks) {
+                ReportSupport.join(task);
+            }
+        } finally {
+            for (final Future<Void> task : tasks) {
+                task.cancel(false);
+            }
+        }
+
+        for (final PackagePage packagePage : packagePages) {
+            page.addItem(packagePage);
+        }
+        page.render();
+    }
+
+    private class GroupVisitor extends AbstractGroupVisitor {
+
+        private final ReportOutputFolder folder;
+        private final GroupPage page;
+
+        public GroupVisitor(final ReportPage parent, final ReportOutputFolder folder, final String name) {
+            super(name);
+            this.folder = folder;
+            this.page = new GroupPage(this.total, parent, folder, ParallelHtmlFormatter.this);
+            // resolve the link before packages refer to it
+            this.page.getLink(folder);
+        }
+
+        @Override
+        protected void handleBundle(final IBundleCoverage bundle, final ISourceFileLocator locator)
+                throws IOException {
+            final BundlePage bundlePage = new BundlePage(bundle, this.page, this.folder.subFolder(bundle.getName()));
+            renderBundle(bundle, bundlePage, locator);
+            this.page.addItem(bundlePage);
+        }
+
+        @Override
+        protected AbstractGroupVisitor handleGroup(final String name) throws IOException {
+            final GroupVisitor visitor = new GroupVisitor(this.page, this.folder.subFolder(name), name);
+            this.page.addItem(visitor.page);
+            return visitor;
+        }
+
+        @Override
+        protected void handleEnd() throws IOException {
+            this.page.render();
+        }
+    }
+
+    /**
+     * The page of a bundle, the same as the one of Jacoco, which renders its
+     * packages itself.
+     */
+    private class BundlePage extends TablePage<ICoverageNode> {
+
+        private final ReportOutputFolder outputFolder;
+        private final boolean hasPackages;
+        private final boolean containsCode;
+
+        public BundlePage(final IBundleCoverage bundle, final ReportPage parent, final ReportOutputFolder folder) {
+            super(bundle.getPlainCopy(), parent, folder, ParallelHtmlFormatter.this);
+            this.outputFolder = folder;
+            // resolve the link before packages refer to it
+            getLink(folder);
+            // don't keep the bundle in memory
+            this.hasPackages = !bundle.getPackages().isEmpty();
+            this.containsCode = bundle.containsCode();
+        }
+
+        @Override
+        protected String getOnload() {
+            return "initialSort(['breadcrumb', 'coveragetable'])";
+        }
+
+        @Override
+        protected String getFileName() {
+            return "index.html";
+        }
+
+        @Override
+        protected void content(final HTMLElement body) throws IOException {
+            if (!this.hasPackages) {
+                body.p().text("No class files specified.");
+            } else if (!this.containsCode) {
+                body.p().text("None of the analyzed classes contain code relevant for code coverage.");
+            } else {
+                super.content(body);
+            }
+        }
+    }
+
+    private static class SynchronizedResources extends Resources {
+
+        public SynchronizedResources(final ReportOutputFolder root) {
+            super(root);
+        }
+
+        @Override
+        public synchronized String getLink(final ReportOutputFolder base, final String name) {
+            return super.getLink(base, name);
+        }
+    }
+}
@@ -0,0 +1,511 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import static java.lang.String.format;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+import org.jacoco.core.JaCoCo;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.ICoverageNode;
+import org.jacoco.core.analysis.ICoverageNode.CounterEntity;
+import org.jacoco.core.analysis.ILine;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.analysis.ISourceNode;
+
+import de.dentrassi.maven.jacoco.CachedCoverage.ClassCoverage;
+import de.dentrassi.maven.jacoco.CachedCoverage.Counter;
+import de.dentrassi.maven.jacoco.CachedCoverage.Line;
+import de.dentrassi.maven.jacoco.CachedCoverage.MethodCoverage;
+
+/**
+ * A cache of class coverage, stored on disk and shared between builds. <br>
+ * Entries are keyed by the class ID and the probes of the execution data, or
+ * by the class ID only for classes without execution data. An entry stores the
+ * counters of the class, and of each method and its lines, so that the
+ * coverage can be created again without reading and analyzing the class file.
+ * Entries are stored per version of Jacoco, and are re-created using the
+ * public API of Jacoco only, as {@link CachedCoverage}.
+ * <p>
+ * Entries are written to a temporary file first and then moved into place, so
+ * that concurrent builds never read incomplete entries. The last modification
+ * time of an entry is updated when it is used. When the cache grows beyond its
+ * maximum size, the least recently used entries are deleted, while holding a
+ * lock on the cache directory.
+ * </p>
+ */
+final class PersistentAnalysisCache {
+
+    private static final int VERSION = 2;
+
+    private static final String SUFFIX = ".cov";
+
+    private static final String LOCK_FILE = ".lock";
+
+    private final Path directory;
+
+    private final long maxSize;
+
+    private final Log log;
+
+    /**
+     * The estimated size of the cache, or -1 if it has not been determined.
+     */
+    private long size = -1;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+
+    /**
+     * Create a new cache.
+     *
+     * @param directory
+     *            the base directory of the cache, entries are stored in a
+     *            sub-directory for each version of Jacoco
+     * @param maxSize
+     *            the maximum size in bytes
+     * @param log
+     *            the log to report problems to
+     */
+    public PersistentAnalysisCache(final File directory, final long maxSize, final Log log) {
+        this.directory = directory.toPath().resolve(JaCoCo.VERSION);
+        this.maxSize = maxSize;
+        this.log = log;
+    }
+
+    /**
+     * Get the cache of the current build session.
+     *
+     * @param session
+     *            the build session
+     * @param directory
+     *            the directory of the cache, only used when the cache gets
+     *            created
+     * @param maxSize
+     *            the maximum size of the cache in bytes, only used when the
+     *            cache gets created
+     * @param log
+     *            the log to report problems to
+     * @return the cache instance of the session
+     */
+    public static PersistentAnalysisCache forSession(final MavenSession session, final File directory,
+            final long maxSize, final Log log) {
+        return SessionScoped.get(session, PersistentAnalysisCache.class,
+                new SessionScoped.Factory<PersistentAnalysisCache>() {
+
+                    @Override
+                    public PersistentAnalysisCache create() {
+                        return new PersistentAnalysisCache(directory, maxSize, log);
+                    }
+                });
+    }
+
+    /**
+     * Get the coverage of a class.
+     *
+     * @param id
+     *            the class ID
+     * @param probes
+     *            the probes of the execution data, or {@code null} if there is
+     *            no execution data for the class
+     * @return the coverage, or {@code null} if the cache has no entry
+     */
+    public IClassCoverage get(final long id, final boolean[] probes) {
+        final Path file = getFile(id, probes);
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            final IClassCoverage result = read(in, id);
+            touch(file);
+            this.hits.incrementAndGet();
+            return result;
+        } catch (final NoSuchFileException e) {
+            this.misses.incrementAndGet();
+            return null;
+        } catch (final IOException e) {
+            this.log.debug("Failed to read cache entry: " + file, e);
+            this.misses.incrementAndGet();
+            delete(file);
+            return null;
+        }
+    }
+
+    /**
+     * Store the coverage of a class.
+     *
+     * @param probes
+     *            the probes of the execution data, or {@code null} if there is
+     *            no execution data for the class
+     * @param coverage
+     *            the coverage of the class
+     */
+    public void put(final boolean[] probes, final IClassCoverage coverage) {
+        final Path file = getFile(coverage.getId(), probes);
+
+        try {
+            Files.createDirectories(file.getParent());
+            final Path tmp = Files.createTempFile(file.getParent(), "entry", ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                    write(out, coverage);
+                }
+                move(tmp, file);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+
+            this.writes.incrementAndGet();
+            added(Files.size(file));
+        } catch (final IOException e) {
+            this.log.debug("Failed to write cache entry: " + file, e);
+        }
+    }
+
+    private static void move(final Path source, final Path target) throws IOException {
+        try {
+            Files.move(source, target, ATOMIC_MOVE, REPLACE_EXISTING);
+        } catch (final AtomicMoveNotSupportedException e) {
+            Files.move(source, target, REPLACE_EXISTING);
+        }
+    }
+
+    private Path getFile(final long id, final boolean[] probes) {
+        final String idString = format("%016x", Long.valueOf(id));
+        final String name = idString + '-' + digest(probes) + SUFFIX;
+        return this.directory.resolve(idString.substring(0, 2)).resolve(name);
+    }
+
+    private static String digest(final boolean[] probes) {
+        if (probes == null) {
+            return "none";
+        }
+
+        final MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-1");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not supported", e);
+        }
+
+        final byte[] bits = new byte[(probes.length + 7) / 8 + 4];
+        bits[0] = (byte) (probes.length >>> 24);
+        bits[1] = (byte) (probes.length >>> 16);
+        bits[2] = (byte) (probes.length >>> 8);
+        bits[3] = (byte) probes.length;
+        for (int i = 0; i < probes.length; i++) {
+            if (probes[i]) {
+                bits[4 + i / 8] |= 1 << (i % 8);
+            }
+        }
+
+        final StringBuilder sb = new StringBuilder();
+        for (final byte b : md.digest(bits)) {
+            sb.append(format("%02x", Integer.valueOf(b & 0xFF)));
+        }
+        return sb.toString();
+    }
+
+    private static void touch(final Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (final IOException e) {
+            // ignore, the entry might just be evicted earlier
+        }
+    }
+
+    private static void delete(final Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (final IOException e) {
+            // ignore
+        }
+    }
+
+    private void added(final long bytes) {
+        final boolean evict;
+        synchronized (this) {
+            if (this.size < 0) {
+                this.size = scan(new ArrayList<Entry>());
+            } else {
+                this.size += bytes;
+            }
+            evict = this.size > this.maxSize;
+        }
+
+        if (evict) {
+            evict();
+        }
+    }
+
+    /**
+     * Delete the least recently used entries, until the cache is below 80% of
+     * its maximum size. <br>
+     * Eviction is skipped if another process or thread is currently evicting
+     * entries.
+     */
+    private void evict() {
+        try {
+            Files.createDirectories(this.directory);
+            try (FileChannel channel = FileChannel.open(this.directory.resolve(LOCK_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                    FileLock lock = tryLock(channel)) {
+
+                if (lock == null) {
+                    return;
+                }
+
+                final List<Entry> entries = new ArrayList<>();
+                long size = scan(entries);
+
+                Collections.sort(entries, new Comparator<Entry>() {
+
+                    @Override
+                    public int compare(final Entry o1, final Entry o2) {
+                        return Long.compare(o1.lastModified, o2.lastModified);
+                    }
+                });
+
+                final long target = this.maxSize / 10 * 8;
+                int deleted = 0;
+                for (final Entry entry : entries) {
+                    if (size <= target) {
+                        break;
+                    }
+                    delete(entry.path);
+                    size -= entry.size;
+                    deleted++;
+                }
+
+                synchronized (this) {
+                    this.size = size;
+                }
+
+                this.log.debug(format("Evicted %s entries from the analysis cache %s", Integer.valueOf(deleted),
+                        this.directory));
+            }
+        } catch (final IOException e) {
+            this.log.debug("Failed to evict entries from the analysis cache", e);
+        }
+    }
+
+    private static FileLock tryLock(final FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (final OverlappingFileLockException e) {
+            // held by another thread of this process
+            return null;
+        }
+    }
+
+    private long scan(final List<Entry> entries) {
+        if (!Files.isDirectory(this.directory)) {
+            return 0;
+        }
+
+        final long[] size = new long[1];
+        try {
+            Files.walkFileTree(this.directory, new SimpleFileVisitor<Path>() {
+
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                    if (file.getFileName().toString().endsWith(SUFFIX)) {
+                        size[0] += attrs.size();
+                        entries.add(new Entry(file, attrs.size(), attrs.lastModifiedTime().toMillis()));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(final Path file, final IOException exc) {
+                    // deleted concurrently
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (final IOException e) {
+            this.log.debug("Failed to scan the analysis cache", e);
+        }
+        return size[0];
+    }
+
+    @Override
+    public String toString() {
+        return format("[directory: %s, hits: %s, misses: %s, writes: %s]", this.directory,
+                Long.valueOf(this.hits.get()), Long.valueOf(this.misses.get()), Long.valueOf(this.writes.get()));
+    }
+
+    private static void write(final DataOutputStream out, final IClassCoverage coverage) throws IOException {
+        out.writeInt(VERSION);
+        out.writeLong(coverage.getId());
+        out.writeUTF(coverage.getName());
+        writeString(out, coverage.getSignature());
+        writeString(out, coverage.getSuperName());
+        writeString(out, coverage.getSourceFileName());
+
+        final String[] interfaces = coverage.getInterfaceNames();
+        out.writeInt(interfaces != null ? interfaces.length : -1);
+        if (interfaces != null) {
+            for (final String name : interfaces) {
+                out.writeUTF(name);
+            }
+        }
+
+        writeCounters(out, coverage);
+
+        out.writeInt(coverage.getMethods().size());
+        for (final IMethodCoverage method : coverage.getMethods()) {
+            out.writeUTF(method.getName());
+            out.writeUTF(method.getDesc());
+            writeString(out, method.getSignature());
+
+            writeCounters(out, method);
+
+            final int first = method.getFirstLine();
+            final int last = method.getLastLine();
+            out.writeInt(first);
+            out.writeInt(last);
+            if (first != ISourceNode.UNKNOWN_LINE) {
+                for (int nr = first; nr <= last; nr++) {
+                    final ILine line = method.getLine(nr);
+                    writeCounter(out, line.getInstructionCounter());
+                    writeCounter(out, line.getBranchCounter());
+                }
+            }
+        }
+    }
+
+    private static IClassCoverage read(final DataInputStream in, final long id) throws IOException {
+        if (in.readInt() != VERSION) {
+            throw new IOException("Unsupported version of cache entry");
+        }
+        if (in.readLong() != id) {
+            throw new IOException("Class ID of cache entry doesn't match");
+        }
+
+        final String name = in.readUTF();
+        final String signature = readString(in);
+        final String superName = readString(in);
+        final String sourceFileName = readString(in);
+
+        final int numInterfaces = in.readInt();
+        String[] interfaces = null;
+        if (numInterfaces >= 0) {
+            interfaces = new String[numInterfaces];
+            for (int i = 0; i < numInterfaces; i++) {
+                interfaces[i] = in.readUTF();
+            }
+        }
+
+        final ClassCoverage result = new ClassCoverage(id, name, signature, superName, interfaces,
+                sourceFileName);
+        readCounters(in, result);
+
+        final int numMethods = in.readInt();
+        final List<MethodCoverage> methods = new ArrayList<>(numMethods);
+        for (int i = 0; i < numMethods; i++) {
+            final MethodCoverage method = new MethodCoverage(in.readUTF(), in.readUTF(), readString(in));
+            readCounters(in, method);
+
+            final int first = in.readInt();
+            final int last = in.readInt();
+            if (first != ISourceNode.UNKNOWN_LINE) {
+                if (last < first) {
+                    throw new IOException("Invalid lines of cache entry");
+                }
+                final Line[] lines = new Line[last - first + 1];
+                for (int nr = first; nr <= last; nr++) {
+                    lines[nr - first] = new Line(readCounter(in), readCounter(in));
+                }
+                method.setLines(first, lines);
+            }
+
+            methods.add(method);
+        }
+        result.setMethods(methods);
+
+        return result;
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeCounters(final DataOutputStream out, final ICoverageNode node) throws IOException {
+        for (final CounterEntity entity : CounterEntity.values()) {
+            writeCounter(out, node.getCounter(entity));
+        }
+    }
+
+    private static void readCounters(final DataInputStream in, final CachedCoverage.SourceNode node)
+            throws IOException {
+        for (final CounterEntity entity : CounterEntity.values()) {
+            node.setCounter(entity, readCounter(in));
+        }
+    }
+
+    private static void writeCounter(final DataOutputStream out, final ICounter counter) throws IOException {
+        out.writeInt(counter.getMissedCount());
+        out.writeInt(counter.getCoveredCount());
+    }
+
+    private static Counter readCounter(final DataInputStream in) throws IOException {
+        return Counter.of(in.readInt(), in.readInt());
+    }
+
+    private static class Entry {
+        private final Path path;
+        private final long size;
+        private final long lastModified;
+
+        public Entry(final Path path, final long size, final long lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
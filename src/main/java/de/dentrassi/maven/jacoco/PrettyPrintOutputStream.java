@@ -0,0 +1,414 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Pretty print XML while it is being written. <br>
+ * This output stream accepts a UTF-8 encoded XML document, as written by the
+ * Jacoco XML formatter, and writes it indented to the target stream. It only
+ * buffers a single tag at a time, so memory consumption doesn't depend on the
+ * size of the document.
+ * <p>
+ * The output is the same as serializing the parsed document with an indenting
+ * {@link javax.xml.transform.Transformer}: attributes are sorted by name,
+ * elements without children are written as empty elements, each element is
+ * placed on its own line, indented by two spaces per level.
+ * </p>
+ * <p>
+ * Only documents consisting of elements and attributes are supported, which
+ * is what Jacoco writes. Text content, comments and processing instructions
+ * other than the XML declaration are not supported.
+ * </p>
+ */
+final class PrettyPrintOutputStream extends OutputStream {
+
+    private static final int INDENT = 2;
+
+    private final Writer out;
+    private final CharsetEncoder encoder;
+    private final String encoding;
+    private final String publicId;
+    private final String systemId;
+
+    private byte[] tag = new byte[256];
+    private int tagLength;
+    private boolean inTag;
+    private byte quote;
+
+    private final List<String> elements = new ArrayList<>();
+    private String pendingName;
+    private boolean started;
+    private boolean closed;
+
+    /**
+     * Create a new pretty printing stream.
+     *
+     * @param out
+     *            the stream to write the indented document to
+     * @param encoding
+     *            the encoding of the indented document
+     * @param publicId
+     *            the public ID of the document type declaration
+     * @param systemId
+     *            the system ID of the document type declaration
+     */
+    public PrettyPrintOutputStream(final OutputStream out, final String encoding, final String publicId,
+            final String systemId) {
+        final Charset charset = Charset.forName(encoding);
+        this.out = new BufferedWriter(new OutputStreamWriter(out, charset));
+        this.encoder = charset.newEncoder();
+        this.encoding = encoding;
+        this.publicId = publicId;
+        this.systemId = systemId;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        process((byte) b);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            process(b[i]);
+        }
+    }
+
+    private void process(final byte b) throws IOException {
+        if (!this.inTag) {
+            if (b == '<') {
+                this.inTag = true;
+                this.tagLength = 0;
+            } else if (b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+                throw new IOException("Text content is not supported");
+            }
+            return;
+        }
+
+        if (this.quote != 0) {
+            if (b == this.quote) {
+                this.quote = 0;
+            }
+        } else if (b == '"' || b == '\'') {
+            this.quote = b;
+        } else if (b == '>') {
+            this.inTag = false;
+            processTag(new String(this.tag, 0, this.tagLength, UTF_8));
+            return;
+        }
+
+        if (this.tagLength == this.tag.length) {
+            this.tag = Arrays.copyOf(this.tag, this.tag.length * 2);
+        }
+        this.tag[this.tagLength++] = b;
+    }
+
+    private void processTag(final String tag) throws IOException {
+        if (tag.startsWith("?") || tag.startsWith("!")) {
+            // we write our own declaration and document type
+            return;
+        }
+
+        if (tag.startsWith("/")) {
+            endElement(tag.substring(1).trim());
+            return;
+        }
+
+        final boolean empty = tag.endsWith("/");
+        final String content = empty ? tag.substring(0, tag.length() - 1) : tag;
+
+        int i = 0;
+        while (i < content.length() && !isWhitespace(content.charAt(i))) {
+            i++;
+        }
+
+        startElement(content.substring(0, i), parseAttributes(content, i), empty);
+    }
+
+    private void startElement(final String name, final List<Attribute> attributes, final boolean empty)
+            throws IOException {
+
+        if (!this.started) {
+            this.started = true;
+            writeProlog(name);
+        } else {
+            closePending();
+            newLine();
+        }
+
+        this.out.write('<');
+        this.out.write(name);
+        for (final Attribute attribute : attributes) {
+            this.out.write(' ');
+            this.out.write(attribute.name);
+            this.out.write("=\"");
+            writeEscaped(attribute.value);
+            this.out.write('"');
+        }
+
+        if (empty) {
+            this.out.write("/>");
+            if (this.elements.isEmpty()) {
+                this.out.write('\n');
+            }
+        } else {
+            this.pendingName = name;
+            this.elements.add(name);
+        }
+    }
+
+    private void endElement(final String name) throws IOException {
+        if (this.elements.isEmpty() || !this.elements.get(this.elements.size() - 1).equals(name)) {
+            throw new IOException(String.format("Unexpected end of element '%s'", name));
+        }
+
+        this.elements.remove(this.elements.size() - 1);
+
+        if (this.pendingName != null) {
+            // element without children
+            this.pendingName = null;
+            this.out.write("/>");
+        } else {
+            newLine();
+            this.out.write("</");
+            this.out.write(name);
+            this.out.write('>');
+        }
+
+        if (this.elements.isEmpty()) {
+            this.out.write('\n');
+        }
+    }
+
+    private void closePending() throws IOException {
+        if (this.pendingName != null) {
+            this.pendingName = null;
+            this.out.write('>');
+        }
+    }
+
+    private void newLine() throws IOException {
+        this.out.write('\n');
+        for (int i = 0; i < this.elements.size() * INDENT; i++) {
+            this.out.write(' ');
+        }
+    }
+
+    private void writeProlog(final String rootName) throws IOException {
+        this.out.write("<?xml version=\"1.0\" encoding=\"");
+        this.out.write(this.encoding);
+        this.out.write("\"?>\n");
+
+        if (this.systemId != null) {
+            this.out.write("<!DOCTYPE ");
+            this.out.write(rootName);
+            if (this.publicId != null) {
+                this.out.write(" PUBLIC \"");
+                this.out.write(this.publicId);
+                this.out.write("\" \"");
+            } else {
+                this.out.write(" SYSTEM \"");
+            }
+            this.out.write(this.systemId);
+            this.out.write("\">\n");
+        }
+    }
+
+    private void writeEscaped(final String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+            case '&':
+                this.out.write("&amp;");
+                break;
+            case '<':
+                this.out.write("&lt;");
+                break;
+            case '>':
+                this.out.write("&gt;");
+                break;
+            case '"':
+                this.out.write("&quot;");
+                break;
+            case '\n':
+            case '\r':
+            case '\t':
+                writeReference(c);
+                break;
+            default:
+                if (Character.isHighSurrogate(c) && i + 1 < value.length()) {
+                    writeReference(Character.toCodePoint(c, value.charAt(++i)));
+                } else if (!this.encoder.canEncode(c)) {
+                    writeReference(c);
+                } else {
+                    this.out.write(c);
+                }
+                break;
+            }
+        }
+    }
+
+    private void writeReference(final int codePoint) throws IOException {
+        this.out.write("&#");
+        this.out.write(Integer.toString(codePoint));
+        this.out.write(';');
+    }
+
+    private static List<Attribute> parseAttributes(final String tag, final int start) throws IOException {
+        final List<Attribute> result = new ArrayList<>();
+
+        int i = start;
+        while (true) {
+            while (i < tag.length() && isWhitespace(tag.charAt(i))) {
+                i++;
+            }
+            if (i >= tag.length()) {
+                break;
+            }
+
+            final int eq = tag.indexOf('=', i);
+            if (eq < 0) {
+                throw new IOException(String.format("Invalid attribute in tag '%s'", tag));
+            }
+            final String name = tag.substring(i, eq).trim();
+
+            i = eq + 1;
+            while (i < tag.length() && isWhitespace(tag.charAt(i))) {
+                i++;
+            }
+            if (i >= tag.length()) {
+                throw new IOException(String.format("Missing attribute value in tag '%s'", tag));
+            }
+
+            final char quote = tag.charAt(i);
+            final int end = tag.indexOf(quote, i + 1);
+            if (end < 0 || quote != '"' && quote != '\'') {
+                throw new IOException(String.format("Invalid attribute value in tag '%s'", tag));
+            }
+
+            result.add(new Attribute(name, unescape(tag.substring(i + 1, end))));
+            i = end + 1;
+        }
+
+        // the DOM stores attributes ordered by name
+        Collections.sort(result);
+
+        return result;
+    }
+
+    private static String unescape(final String value) throws IOException {
+        final StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '&') {
+                final int end = value.indexOf(';', i);
+                if (end < 0) {
+                    throw new IOException(String.format("Invalid entity in '%s'", value));
+                }
+                appendEntity(sb, value.substring(i + 1, end));
+                i = end;
+            } else if (isWhitespace(c)) {
+                // attribute value normalization
+                sb.append(' ');
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void appendEntity(final StringBuilder sb, final String entity) throws IOException {
+        switch (entity) {
+        case "lt":
+            sb.append('<');
+            break;
+        case "gt":
+            sb.append('>');
+            break;
+        case "amp":
+            sb.append('&');
+            break;
+        case "quot":
+            sb.append('"');
+            break;
+        case "apos":
+            sb.append('\'');
+            break;
+        default:
+            try {
+                if (entity.startsWith("#x")) {
+                    sb.appendCodePoint(Integer.parseInt(entity.substring(2), 16));
+                } else if (entity.startsWith("#")) {
+                    sb.appendCodePoint(Integer.parseInt(entity.substring(1)));
+                } else {
+                    throw new IOException(String.format("Unknown entity '%s'", entity));
+                }
+            } catch (final NumberFormatException e) {
+                throw new IOException(String.format("Invalid character reference '%s'", entity), e);
+            }
+            break;
+        }
+    }
+
+    private static boolean isWhitespace(final char c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+    }
+
+    @Override
+    public void flush() throws IOException {
+        this.out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+
+        try {
+            if (this.inTag || !this.elements.isEmpty()) {
+                throw new IOException("Incomplete XML document");
+            }
+        } finally {
+            this.out.close();
+        }
+    }
+
+    private static class Attribute implements Comparable<Attribute> {
+        private final String name;
+        private final String value;
+
+        public Attribute(final String name, final String value) {
+            this.name = name;
+            this.value = value;
+        }
+
+        @Override
+        public int compareTo(final Attribute o) {
+            return this.name.compareTo(o.name);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * An index of the projects in the reactor. <br>
+ * The index is created once per build session. It allows looking up reactor
+ * projects by their coordinates and remembers the reactor dependencies of each
+ * project, so that modules depending on the same projects don't need to
+ * resolve them again.
+ */
+final class ReactorIndex {
+
+    private final Map<String, MavenProject> projects;
+
+    private final ConcurrentMap<String, List<Entry>> dependencies = new ConcurrentHashMap<>();
+
+    /**
+     * Create a new index.
+     *
+     * @param reactorProjects
+     *            the projects of the reactor
+     */
+    public ReactorIndex(final List<MavenProject> reactorProjects) {
+        this.projects = new HashMap<>(reactorProjects.size());
+        for (final MavenProject project : reactorProjects) {
+            this.projects.put(toKey(project.getGroupId(), project.getArtifactId(), project.getVersion()), project);
+        }
+    }
+
+    /**
+     * Get the index of the current build session.
+     *
+     * @param session
+     *            the build session
+     * @param reactorProjects
+     *            the projects of the reactor, used when the index gets
+     *            created
+     * @return the index instance of the session
+     */
+    public static ReactorIndex forSession(final MavenSession session, final List<MavenProject> reactorProjects) {
+        return SessionScoped.get(session, ReactorIndex.class, new SessionScoped.Factory<ReactorIndex>() {
+
+            @Override
+            public ReactorIndex create() {
+                return new ReactorIndex(reactorProjects);
+            }
+        });
+    }
+
+    /**
+     * Find the reactor project of a dependency.
+     *
+     * @param dependency
+     *            the dependency
+     * @return the project, or {@code null} if the dependency is not part of
+     *         the reactor
+     */
+    public MavenProject find(final Dependency dependency) {
+        return this.projects.get(toKey(dependency.getGroupId(), dependency.getArtifactId(), dependency.getVersion()));
+    }
+
+    /**
+     * Find the reactor dependencies of a project.
+     *
+     * @param project
+     *            the project
+     * @param scopes
+     *            the scopes of dependencies to consider
+     * @param transitive
+     *            whether to include transitive dependencies
+     * @param log
+     *            the log for debug output
+     * @return the list of reactor projects, in the order of a depth first
+     *         traversal of the dependencies
+     */
+    public List<MavenProject> findDependencies(final MavenProject project, final Set<String> scopes,
+            final boolean transitive, final Log log) {
+
+        final List<Entry> entries;
+        if (transitive) {
+            entries = getDependencies(project, scopes, toKey(scopes), log);
+        } else {
+            entries = findDirectDependencies(project, scopes, log);
+        }
+
+        final List<MavenProject> result = new ArrayList<>(entries.size());
+        for (final Entry entry : entries) {
+            result.add(entry.project);
+        }
+        return result;
+    }
+
+    private List<Entry> findDirectDependencies(final MavenProject project, final Set<String> scopes, final Log log) {
+        final Set<String> known = new HashSet<>();
+        final List<Entry> result = new ArrayList<>();
+
+        for (final Dependency dependency : project.getDependencies()) {
+            if (!scopes.contains(dependency.getScope())) {
+                continue;
+            }
+
+            final String key = toKey(dependency);
+            if (!known.add(key)) {
+                continue;
+            }
+
+            final MavenProject dependencyProject = findAndLog(dependency, log);
+            if (dependencyProject != null) {
+                result.add(new Entry(key, dependencyProject));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Get the transitive reactor dependencies of a project. <br>
+     * The result is the same as a depth first traversal over all
+     * dependencies, skipping dependencies which have already been visited. As
+     * the dependency graph of a reactor is free of cycles, the dependencies of
+     * a project can be computed once and then be re-used for all projects
+     * depending on it.
+     */
+    private List<Entry> getDependencies(final MavenProject project, final Set<String> scopes,
+            final String scopesKey, final Log log) {
+
+        final String projectKey = toKey(project.getGroupId(), project.getArtifactId(), project.getVersion())
+                + "|" + scopesKey;
+
+        final List<Entry> cached = this.dependencies.get(projectKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        final Set<String> known = new HashSet<>();
+        final List<Entry> result = new ArrayList<>();
+
+        for (final Dependency dependency : project.getDependencies()) {
+            if (!scopes.contains(dependency.getScope())) {
+                continue;
+            }
+
+            final String key = toKey(dependency);
+            if (!known.add(key)) {
+                continue;
+            }
+
+            final MavenProject dependencyProject = findAndLog(dependency, log);
+            if (dependencyProject == null) {
+                continue;
+            }
+
+            result.add(new Entry(key, dependencyProject));
+            for (final Entry entry : getDependencies(dependencyProject, scopes, scopesKey, log)) {
+                if (known.add(entry.key)) {
+                    result.add(entry);
+                }
+            }
+        }
+
+        final List<Entry> previous = this.dependencies.putIfAbsent(projectKey, Collections.unmodifiableList(result));
+        return previous != null ? previous : result;
+    }
+
+    private MavenProject findAndLog(final Dependency dependency, final Log log) {
+        log.debug("Adding dependency - " + dependency.toString());
+        final MavenProject result = find(dependency);
+        if (result == null) {
+            log.debug("  -> Unable to find in reactor");
+        }
+        return result;
+    }
+
+    private static String toKey(final Set<String> scopes) {
+        final StringBuilder sb = new StringBuilder();
+        for (final String scope : new TreeSet<>(scopes)) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(scope);
+        }
+        return sb.toString();
+    }
+
+    private static String toKey(final String groupId, final String artifactId, final String version) {
+        return groupId + ':' + artifactId + ':' + version;
+    }
+
+    private static String toKey(final Dependency dependency) {
+        return dependency.getManagementKey() + dependency.getVersion();
+    }
+
+    private static class Entry {
+        private final String key;
+        private final MavenProject project;
+
+        public Entry(final String key, final MavenProject project) {
+            this.key = key;
+            this.project = project;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+/**
+ * Output formats of a report.
+ */
+public enum ReportFormat {
+    /**
+     * The XML report, written to <code>xmlFile</code>.
+     */
+    XML,
+    /**
+     * One XML report per bundle, or per package of large bundles, and an
+     * index file, written to <code>shardDirectory</code>.
+     */
+    XML_SHARDS,
+    /**
+     * The CSV report, written to <code>csvFile</code>.
+     */
+    CSV,
+    /**
+     * The HTML report, including source files, written to
+     * <code>htmlDirectory</code>.
+     */
+    HTML,
+    /**
+     * An LCOV tracefile, written to <code>lcovFile</code>.
+     */
+    LCOV,
+    /**
+     * A Cobertura XML report, written to <code>coberturaFile</code>.
+     */
+    COBERTURA,
+    /**
+     * A summary of the coverage, written to the log.
+     */
+    SUMMARY;
+}
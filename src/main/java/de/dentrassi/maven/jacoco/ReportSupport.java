@@ -14,16 +14,44 @@ package de.dentrassi.maven.jacoco;
 
 import static java.lang.String.format;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
@@ -31,7 +59,14 @@ import org.jacoco.core.analysis.Analyzer;
 import org.jacoco.core.analysis.CoverageBuilder;
 import org.jacoco.core.analysis.IBundleCoverage;
 import org.jacoco.core.analysis.IClassCoverage;
-import org.jacoco.core.tools.ExecFileLoader;
+import org.jacoco.core.analysis.ICoverageVisitor;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.ISessionInfoVisitor;
+import org.jacoco.core.data.SessionInfoStore;
+import org.jacoco.core.runtime.RemoteControlReader;
+import org.jacoco.core.runtime.RemoteControlWriter;
 import org.jacoco.report.FileMultiReportOutput;
 import org.jacoco.report.IReportGroupVisitor;
 import org.jacoco.report.IReportVisitor;
@@ -54,14 +89,54 @@ import org.jacoco.report.xml.XMLFormatter;
  * <code>loadExecutionData()</code></li>
  * <li>Add one or multiple formatters with <code>addXXX()</code> methods</li>
  * <li>Create the root visitor with <code>initRootVisitor()</code></li>
- * <li>Process one or multiple projects with <code>processProject()</code></li>
+ * <li>Process one or multiple projects with <code>processProject()</code> or
+ * <code>processProjects()</code></li>
+ * <li>Release resources with <code>close()</code></li>
  * </ol>
  */
-final class ReportSupport {
+final class ReportSupport implements Closeable {
+
+    /**
+     * Number of class files which are analyzed by a single task, when
+     * analyzing in parallel.
+     */
+    private static final int CHUNK_SIZE = 64;
+
+    private static final String VERSIONS_PREFIX = "META-INF/versions/";
+
+    private static final String[] ARCHIVE_SUFFIXES = { ".jar", ".war", ".ear", ".zip", ".jmod", ".pack.gz" };
 
     private final Log log;
-    private final ExecFileLoader loader;
+    private ExecutionDataStore executionData;
+    private SessionInfoStore sessionInfos;
+    private boolean executionDataShared;
     private final List<IReportVisitor> formatters;
+    private final List<Closeable> outputs;
+
+    private int threads = 1;
+    private ForkJoinPool pool;
+
+    private AnalysisCache cache;
+
+    private Set<String> classFilter;
+
+    private Set<String> changedClasses;
+
+    private SharedExecutionData sharedExecutionData;
+
+    private SourceFileIndex sourceFileIndex;
+
+    private boolean streaming;
+    private final List<SharedExecutionData.Handle> handles = new ArrayList<>();
+
+    private Metrics metrics;
+
+    private ConcurrentMap<String, List<File>> fileLists;
+
+    /**
+     * If any of the formatters renders source files.
+     */
+    private boolean sourcesRequired;
 
     /**
      * Construct a new instance with the given log output.
@@ -71,8 +146,225 @@ final class ReportSupport {
      */
     public ReportSupport(final Log log) {
         this.log = log;
-        this.loader = new ExecFileLoader();
+        this.executionData = new ExecutionDataStore();
+        this.sessionInfos = new SessionInfoStore();
         this.formatters = new ArrayList<>();
+        this.outputs = new ArrayList<>();
+    }
+
+    /**
+     * Set the number of threads used for analyzing class files.
+     *
+     * @param threads
+     *            the number of threads, a value of zero or less will use the
+     *            number of available processors
+     */
+    public void setThreads(final int threads) {
+        if (threads <= 0) {
+            this.threads = Runtime.getRuntime().availableProcessors();
+        } else {
+            this.threads = threads;
+        }
+    }
+
+    /**
+     * Set the cache to use for analyzing class files.
+     *
+     * @param cache
+     *            the cache, may be {@code null} to disable caching
+     */
+    public void setAnalysisCache(final AnalysisCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Only analyze the given classes. <br>
+     * Class files of other classes are skipped, as well as archives. Bundles
+     * which contain none of the classes are not reported. This must be called
+     * before filtering the execution data.
+     *
+     * @param changedClasses
+     *            the VM names of the top level classes, their nested and inner
+     *            classes are analyzed as well. May be {@code null} to analyze
+     *            all classes.
+     */
+    public void setChangedClasses(final Set<String> changedClasses) {
+        this.changedClasses = changedClasses;
+    }
+
+    /**
+     * Set the shared execution data to load execution data files from. <br>
+     * Unless the execution data is filtered, files are acquired from the
+     * shared instance, so that they are only loaded once, even when used by
+     * concurrent executions. They are released when this instance is closed.
+     *
+     * @param sharedExecutionData
+     *            the shared execution data, may be {@code null} to always load
+     *            a private copy
+     */
+    public void setSharedExecutionData(final SharedExecutionData sharedExecutionData) {
+        this.sharedExecutionData = sharedExecutionData;
+    }
+
+    /**
+     * Set the shared index of source files to locate source files in. <br>
+     * The source roots of a project are then only walked once, even when
+     * used by many reports.
+     *
+     * @param sourceFileIndex
+     *            the shared index, may be {@code null} to index the source
+     *            roots of each report
+     */
+    public void setSourceFileIndex(final SourceFileIndex sourceFileIndex) {
+        this.sourceFileIndex = sourceFileIndex;
+    }
+
+    /**
+     * Analyze and emit bundles package by package. <br>
+     * Instead of creating the coverage of a whole bundle in memory, the
+     * classes of a package are analyzed when the formatters reach the package,
+     * and are discarded once it is written. The packages of a bundle can only
+     * be iterated once, so only a single formatter writing the packages,
+     * followed by formatters which just use the counters of the bundle, is
+     * supported. This must be called
+     * before adding formatters.
+     *
+     * @param streaming
+     *            {@code true} to enable streaming
+     */
+    public void setStreaming(final boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Set the metrics to record the analysis of bundles to.
+     *
+     * @param metrics
+     *            the metrics, may be {@code null} to disable recording
+     */
+    public void setMetrics(final Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Set a cache of the class files found in each output directory. <br>
+     * When set, the output directory of a project is only scanned once. The
+     * cache must only be shared with instances using the same includes and
+     * excludes, and only while the output directories don't change.
+     *
+     * @param fileLists
+     *            the cache, may be {@code null} to scan every time
+     */
+    public void setFileListCache(final ConcurrentMap<String, List<File>> fileLists) {
+        this.fileLists = fileLists;
+    }
+
+    /**
+     * Release all resources. <br>
+     * Outputs which have not already been closed by their formatters are
+     * closed, the thread pool is shut down and shared execution data is
+     * released.
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.pool != null) {
+            this.pool.shutdownNow();
+            this.pool = null;
+        }
+
+        for (final SharedExecutionData.Handle handle : this.handles) {
+            this.sharedExecutionData.release(handle);
+        }
+        this.handles.clear();
+
+        IOException error = null;
+        for (final Closeable output : this.outputs) {
+            try {
+                output.close();
+            } catch (final IOException e) {
+                if (error == null) {
+                    error = e;
+                } else {
+                    error.addSuppressed(e);
+                }
+            }
+        }
+        this.outputs.clear();
+
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Only load execution data of classes of the given projects. <br>
+     * This must be called before loading the execution data. Classes are
+     * matched by the path of their class files. If a project contains archives,
+     * like JARs, no filter will be applied.
+     *
+     * @param projects
+     *            the projects to be processed
+     * @param includes
+     *            list of includes patterns
+     * @param excludes
+     *            list of excludes patterns
+     * @throws IOException
+     *             if class files can't be listed
+     */
+    public void filterExecutionData(final List<MavenProject> projects, final List<String> includes,
+            final List<String> excludes) throws IOException {
+
+        final Set<String> names = new HashSet<>();
+        final FileFilter filter = new FileFilter(includes, excludes);
+
+        for (final MavenProject project : projects) {
+            final File classesDir = new File(project.getBuild().getOutputDirectory());
+            if (!classesDir.isDirectory()) {
+                continue;
+            }
+            for (final String fileName : filter.getFileNames(classesDir)) {
+                final String name = fileName.replace(File.separatorChar, '/');
+                if (this.changedClasses != null) {
+                    // archives are not analyzed either
+                    if (ChangedClasses.matches(this.changedClasses, name)) {
+                        names.add(stripVersionPrefix(name.substring(0, name.length() - ".class".length())));
+                    }
+                    continue;
+                }
+                if (isArchive(name)) {
+                    this.log.info(format("Not filtering execution data, project '%s' contains archive: %s",
+                            project.getArtifactId(), name));
+                    this.classFilter = null;
+                    return;
+                }
+                if (!name.endsWith(".class")) {
+                    continue;
+                }
+                names.add(stripVersionPrefix(name.substring(0, name.length() - ".class".length())));
+            }
+        }
+
+        this.classFilter = names;
+    }
+
+    private static boolean isArchive(final String name) {
+        final String lower = name.toLowerCase(Locale.ROOT);
+        for (final String suffix : ARCHIVE_SUFFIXES) {
+            if (lower.endsWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static String stripVersionPrefix(final String name) {
+        // classes of multi release JARs
+
+        if (!name.startsWith(VERSIONS_PREFIX)) {
+            return name;
+        }
+        final int idx = name.indexOf('/', VERSIONS_PREFIX.length());
+        return idx > 0 ? name.substring(idx + 1) : name;
     }
 
     /**
@@ -84,31 +376,428 @@ final class ReportSupport {
      *             if the file can't be loaded
      */
     public void loadExecutionData(final File execFile) throws IOException {
+        if (isShared()) {
+            loadShared(Collections.singletonList(execFile));
+            return;
+        }
+
         this.log.info("Loading execution data file " + execFile);
-        this.loader.load(execFile);
+        load(execFile, this.executionData, this.sessionInfos);
+    }
+
+    /**
+     * Loads the given execution data files and merges their content. <br>
+     * If more than one thread is configured, the files are read in parallel.
+     *
+     * @param execFiles
+     *            execution data files to load
+     * @throws IOException
+     *             if one of the files can't be loaded
+     */
+    public void loadExecutionData(final List<File> execFiles) throws IOException {
+        if (isShared()) {
+            loadShared(execFiles);
+            return;
+        }
+
+        if (this.threads <= 1 || execFiles.size() <= 1) {
+            for (final File execFile : execFiles) {
+                loadExecutionData(execFile);
+            }
+            return;
+        }
+
+        final List<ForkJoinTask<LoadResult>> tasks = new ArrayList<>(execFiles.size());
+        for (final File execFile : execFiles) {
+            this.log.info("Loading execution data file " + execFile);
+            tasks.add(getPool().submit(new Callable<LoadResult>() {
+
+                @Override
+                public LoadResult call() throws IOException {
+                    final LoadResult result = new LoadResult();
+                    load(execFile, result.executionData, result.sessionInfos);
+                    return result;
+                }
+            }));
+        }
+
+        // merge in the order of the files
+
+        for (final ForkJoinTask<LoadResult> task : tasks) {
+            final LoadResult result = join(task);
+            result.sessionInfos.accept(this.sessionInfos);
+            result.executionData.accept(this.executionData);
+        }
+    }
+
+    private boolean isShared() {
+        // filtered data is specific to this instance
+        return this.sharedExecutionData != null && this.classFilter == null;
+    }
+
+    private void loadShared(final List<File> execFiles) throws IOException {
+        final SharedExecutionData.Loader loader = new SharedExecutionData.Loader() {
+
+            @Override
+            public void load(final File file, final ExecutionDataStore executionData,
+                    final SessionInfoStore sessionInfos) throws IOException {
+                ReportSupport.this.log.info("Loading execution data file " + file);
+                ReportSupport.this.load(file, executionData, sessionInfos);
+            }
+        };
+
+        final List<SharedExecutionData.Handle> acquired = new ArrayList<>(execFiles.size());
+        if (this.threads <= 1 || execFiles.size() <= 1) {
+            for (final File execFile : execFiles) {
+                acquired.add(acquire(execFile, loader));
+            }
+        } else {
+            final List<ForkJoinTask<SharedExecutionData.Handle>> tasks = new ArrayList<>(execFiles.size());
+            for (final File execFile : execFiles) {
+                tasks.add(getPool().submit(new Callable<SharedExecutionData.Handle>() {
+
+                    @Override
+                    public SharedExecutionData.Handle call() throws IOException {
+                        return acquire(execFile, loader);
+                    }
+                }));
+            }
+            for (final ForkJoinTask<SharedExecutionData.Handle> task : tasks) {
+                acquired.add(join(task));
+            }
+        }
+
+        if (acquired.size() == 1 && this.executionData.getContents().isEmpty()
+                && this.sessionInfos.getInfos().isEmpty()) {
+            // use the shared data directly, it is not modified
+            this.executionData = acquired.get(0).getExecutionData();
+            this.sessionInfos = acquired.get(0).getSessionInfos();
+            this.executionDataShared = true;
+            return;
+        }
+
+        // merge copies, merging modifies the probes
+
+        unshareExecutionData();
+        for (final SharedExecutionData.Handle handle : acquired) {
+            handle.getSessionInfos().accept(this.sessionInfos);
+            for (final ExecutionData data : handle.getExecutionData().getContents()) {
+                this.executionData
+                        .visitClassExecution(new ExecutionData(data.getId(), data.getName(), data.getProbes().clone()));
+            }
+        }
+    }
+
+    /**
+     * Replace shared execution data with a copy, before modifying it.
+     */
+    private void unshareExecutionData() {
+        if (!this.executionDataShared) {
+            return;
+        }
+
+        final ExecutionDataStore executionData = new ExecutionDataStore();
+        for (final ExecutionData data : this.executionData.getContents()) {
+            executionData.put(new ExecutionData(data.getId(), data.getName(), data.getProbes().clone()));
+        }
+        final SessionInfoStore sessionInfos = new SessionInfoStore();
+        this.sessionInfos.accept(sessionInfos);
+
+        this.executionData = executionData;
+        this.sessionInfos = sessionInfos;
+        this.executionDataShared = false;
+    }
+
+    /**
+     * Dumps the execution data of a running agent and merges it. <br>
+     * The agent must run in <code>tcpserver</code> output mode. The execution
+     * data is read directly from the connection, without writing a file.
+     *
+     * @param address
+     *            the address the agent listens on
+     * @param port
+     *            the port the agent listens on
+     * @param reset
+     *            whether the agent should reset its execution data after the
+     *            dump
+     * @param timeout
+     *            the timeout of connecting and of each read, in
+     *            milliseconds, zero for no timeout
+     * @throws IOException
+     *             if the agent can't be reached, or the dump fails or times
+     *             out
+     */
+    public void dumpExecutionData(final String address, final int port, final boolean reset, final int timeout)
+            throws IOException {
+        final String agent = address + ":" + port;
+        this.log.info("Dumping execution data of agent " + agent);
+
+        final long start = System.nanoTime();
+
+        // the dump is never shared, merging modifies the probes
+
+        unshareExecutionData();
+
+        final LoadCounter counter = new LoadCounter();
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(address, port), timeout);
+            socket.setSoTimeout(timeout);
+            final RemoteControlWriter writer = new RemoteControlWriter(socket.getOutputStream());
+            final RemoteControlReader reader = new RemoteControlReader(
+                    new BufferedInputStream(socket.getInputStream()));
+            reader.setSessionInfoVisitor(this.sessionInfos);
+            reader.setExecutionDataVisitor(counter.filter(this.executionData));
+
+            writer.visitDumpCommand(true, reset);
+            if (!reader.read()) {
+                throw new IOException("Connection to agent closed before the dump was complete: " + agent);
+            }
+        }
+
+        counter.log("Dumped execution data of agent " + agent, start);
+    }
+
+    private SharedExecutionData.Handle acquire(final File execFile, final SharedExecutionData.Loader loader)
+            throws IOException {
+        final SharedExecutionData.Handle handle = this.sharedExecutionData.acquire(execFile, loader);
+        synchronized (this.handles) {
+            this.handles.add(handle);
+        }
+        return handle;
+    }
+
+    private void load(final File execFile, final ExecutionDataStore executionData,
+            final ISessionInfoVisitor sessionInfos) throws IOException {
+
+        final long start = System.nanoTime();
+
+        final ExecFileReader reader = new ExecFileReader(execFile);
+        reader.setSessionInfoVisitor(sessionInfos);
+        reader.setExecutionDataStore(executionData);
+        reader.setClassFilter(this.classFilter);
+        reader.read();
+
+        logLoaded("Loaded execution data file " + execFile, start, reader.getLoadedClassCount(),
+                reader.getClassCount());
+    }
+
+    private void logLoaded(final String message, final long start, final int loaded, final int total) {
+        final Long duration = Long.valueOf(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        if (this.classFilter == null) {
+            this.log.info(format("%s in %s ms", message, duration));
+        } else {
+            this.log.info(format("%s in %s ms, using %s of %s classes", message, duration, Integer.valueOf(loaded),
+                    Integer.valueOf(total)));
+        }
+    }
+
+    /**
+     * Counts the classes of loaded execution data, applying the class filter.
+     */
+    private class LoadCounter {
+        private final Set<String> filter = ReportSupport.this.classFilter;
+        private final AtomicInteger total = new AtomicInteger();
+        private final AtomicInteger loaded = new AtomicInteger();
+
+        public IExecutionDataVisitor filter(final IExecutionDataVisitor executionData) {
+            return new IExecutionDataVisitor() {
+
+                @Override
+                public void visitClassExecution(final ExecutionData data) {
+                    LoadCounter.this.total.incrementAndGet();
+                    if (LoadCounter.this.filter == null || LoadCounter.this.filter.contains(data.getName())) {
+                        LoadCounter.this.loaded.incrementAndGet();
+                        executionData.visitClassExecution(data);
+                    }
+                }
+            };
+        }
+
+        public void log(final String message, final long start) {
+            logLoaded(message, start, this.loaded.get(), this.total.get());
+        }
+    }
+
+    private static class LoadResult {
+        private final ExecutionDataStore executionData = new ExecutionDataStore();
+        private final SessionInfoStore sessionInfos = new SessionInfoStore();
     }
 
     public void addXmlFormatter(final File targetfile, final String encoding) throws IOException {
+        addXmlFormatter(targetfile, encoding, Compression.NONE);
+    }
+
+    /**
+     * Add an XML formatter writing a compressed file.
+     *
+     * @param targetfile
+     *            the file to write to
+     * @param encoding
+     *            the encoding of the XML file
+     * @param compression
+     *            the compression of the file
+     * @throws IOException
+     *             if the file cannot be created
+     */
+    public void addXmlFormatter(final File targetfile, final String encoding, final Compression compression)
+            throws IOException {
+        this.formatters.add(createXmlVisitor(openOutput(targetfile, compression), encoding));
+    }
+
+    /**
+     * Add an XML formatter which writes an indented document.
+     *
+     * @param targetfile
+     *            the file to write to
+     * @param encoding
+     *            the encoding of the XML file
+     * @throws IOException
+     *             if the file cannot be created
+     */
+    public void addPrettyXmlFormatter(final File targetfile, final String encoding) throws IOException {
+        addPrettyXmlFormatter(targetfile, encoding, Compression.NONE);
+    }
+
+    /**
+     * Add an XML formatter which writes an indented and compressed document.
+     * <br>
+     * The document is indented and compressed while it is being written.
+     *
+     * @param targetfile
+     *            the file to write to
+     * @param encoding
+     *            the encoding of the XML file
+     * @param compression
+     *            the compression of the file
+     * @throws IOException
+     *             if the file cannot be created
+     */
+    public void addPrettyXmlFormatter(final File targetfile, final String encoding, final Compression compression)
+            throws IOException {
+        final OutputStream out = new PrettyPrintOutputStream(openOutput(targetfile, compression), encoding,
+                "-//JACOCO//DTD Report 1.0//EN", "report.dtd");
+        this.outputs.add(out);
+        this.formatters.add(createXmlVisitor(out, "UTF-8"));
+    }
+
+    private IReportVisitor createXmlVisitor(final OutputStream out, final String encoding) throws IOException {
+        if (this.streaming) {
+            return new StreamingXmlFormatter(encoding).createVisitor(out);
+        }
+
         final XMLFormatter xml = new XMLFormatter();
         xml.setOutputEncoding(encoding);
-        this.formatters.add(xml.createVisitor(new FileOutputStream(targetfile)));
+        return xml.createVisitor(out);
     }
 
     public void addCsvFormatter(final File targetfile, final String encoding) throws IOException {
         final CSVFormatter csv = new CSVFormatter();
         csv.setOutputEncoding(encoding);
-        this.formatters.add(csv.createVisitor(new FileOutputStream(targetfile)));
+        this.formatters.add(csv.createVisitor(openOutput(targetfile)));
+    }
+
+    /**
+     * Add a formatter writing one XML report per bundle, and an index of all
+     * reports. <br>
+     * If more than one thread is configured, the reports are written
+     * concurrently, while the next bundles are analyzed.
+     *
+     * @param directory
+     *            the directory to write the reports to, will be cleared
+     * @param encoding
+     *            the encoding of the XML files
+     * @param pretty
+     *            whether to indent the XML files
+     * @param compression
+     *            the compression of the XML files
+     * @param maxClasses
+     *            bundles with more classes are split into one report per
+     *            package, zero or less never splits bundles
+     * @throws IOException
+     *             if the directory cannot be prepared
+     */
+    public void addShardedXmlFormatter(final File directory, final String encoding, final boolean pretty,
+            final Compression compression, final int maxClasses) throws IOException {
+        final ShardedXmlFormatter formatter = new ShardedXmlFormatter();
+        formatter.setOutputEncoding(encoding);
+        formatter.setPretty(pretty);
+        formatter.setCompression(compression);
+        formatter.setMaxClasses(maxClasses);
+        if (this.threads > 1) {
+            formatter.setExecutor(getPool(), this.threads);
+        }
+        this.formatters.add(formatter.createVisitor(directory));
+    }
+
+    /**
+     * Add a formatter writing an LCOV tracefile.
+     *
+     * The source files are resolved in the source roots of the bundles, using
+     * the same index as the formatters reading them.
+     *
+     * @param targetfile
+     *            the file to write to
+     * @throws IOException
+     *             if the file cannot be created
+     */
+    public void addLcovFormatter(final File targetfile) throws IOException {
+        this.formatters.add(new LcovFormatter().createVisitor(openOutput(targetfile)));
+        this.sourcesRequired = true;
+    }
+
+    /**
+     * Add a formatter writing a Cobertura XML report.
+     *
+     * @param targetfile
+     *            the file to write to
+     * @param sourceRoots
+     *            the source roots, written to the report
+     * @throws IOException
+     *             if the file cannot be created
+     */
+    public void addCoberturaFormatter(final File targetfile, final List<File> sourceRoots) throws IOException {
+        this.formatters.add(new CoberturaFormatter(sourceRoots).createVisitor(targetfile, openOutput(targetfile)));
     }
 
+    /**
+     * Add a formatter writing an HTML report, including source files. <br>
+     * If more than one thread is configured, the pages of the packages of a
+     * bundle are rendered concurrently.
+     *
+     * @param targetdir
+     *            the directory to write the report to
+     * @param encoding
+     *            the encoding of the HTML files
+     * @param footer
+     *            the footer text of the pages, may be {@code null}
+     * @param locale
+     *            the locale to format numbers with
+     * @throws IOException
+     *             if the report cannot be created
+     */
     public void addHtmlFormatter(final File targetdir, final String encoding, final String footer, final Locale locale)
             throws IOException {
-        final HTMLFormatter htmlFormatter = new HTMLFormatter();
+        final HTMLFormatter htmlFormatter;
+        if (this.threads > 1) {
+            htmlFormatter = new ParallelHtmlFormatter(getPool());
+        } else {
+            htmlFormatter = new HTMLFormatter();
+        }
         htmlFormatter.setOutputEncoding(encoding);
         htmlFormatter.setLocale(locale);
         if (footer != null) {
             htmlFormatter.setFooterText(footer);
         }
-        this.formatters.add(htmlFormatter.createVisitor(new FileMultiReportOutput(targetdir)));
+        final FileMultiReportOutput output = new FileMultiReportOutput(targetdir);
+        this.outputs.add(new Closeable() {
+
+            @Override
+            public void close() throws IOException {
+                output.close();
+            }
+        });
+        this.formatters.add(htmlFormatter.createVisitor(output));
+        this.sourcesRequired = true;
     }
 
     public void addAllFormatters(final File targetdir, final String encoding, final String footer, final Locale locale)
@@ -119,6 +808,24 @@ final class ReportSupport {
         addHtmlFormatter(targetdir, encoding, footer, locale);
     }
 
+    /**
+     * Add a formatter which logs a summary of the coverage of each bundle
+     * and of the whole report.
+     */
+    public void addSummaryFormatter() {
+        this.formatters.add(new SummaryVisitor(this.log));
+    }
+
+    private OutputStream openOutput(final File targetfile) throws IOException {
+        return openOutput(targetfile, Compression.NONE);
+    }
+
+    private OutputStream openOutput(final File targetfile, final Compression compression) throws IOException {
+        final OutputStream out = compression.open(targetfile);
+        this.outputs.add(out);
+        return out;
+    }
+
     public void addRulesChecker(final List<Rule> rules, final IViolationsOutput output) {
         final RulesChecker checker = new RulesChecker();
         checker.setRules(rules);
@@ -127,8 +834,7 @@ final class ReportSupport {
 
     public IReportVisitor initRootVisitor() throws IOException {
         final IReportVisitor visitor = new MultiReportVisitor(this.formatters);
-        visitor.visitInfo(this.loader.getSessionInfoStore().getInfos(),
-                this.loader.getExecutionDataStore().getContents());
+        visitor.visitInfo(this.sessionInfos.getInfos(), this.executionData.getContents());
         return visitor;
     }
 
@@ -173,27 +879,424 @@ final class ReportSupport {
      */
     public void processProject(final IReportGroupVisitor visitor, final String bundeName, final MavenProject project,
             final List<String> includes, final List<String> excludes, final String srcEncoding) throws IOException {
-        processProject(visitor, bundeName, project, includes, excludes, new SourceFileCollection(project, srcEncoding));
+        processProject(visitor, bundeName, project, includes, excludes, createLocator(project, srcEncoding));
+    }
+
+    /**
+     * Calculates coverage for the given projects and emits it to the report
+     * group including source references. <br>
+     * If more than one thread is configured, the projects are analyzed
+     * concurrently. Still the bundles are emitted in the order of the projects.
+     *
+     * @param visitor
+     *            group visitor to emit the projects' coverage to
+     * @param projects
+     *            the MavenProjects, the artifact ID is used as bundle name
+     * @param includes
+     *            list of includes patterns
+     * @param excludes
+     *            list of excludes patterns
+     * @param srcEncoding
+     *            encoding of the source files within the projects
+     * @throws IOException
+     *             if class files can't be read
+     */
+    public void processProjects(final IReportGroupVisitor visitor, final List<MavenProject> projects,
+            final List<String> includes, final List<String> excludes, final String srcEncoding) throws IOException {
+
+        if (this.threads <= 1) {
+            for (final MavenProject project : projects) {
+                processProject(visitor, project.getArtifactId(), project, includes, excludes, srcEncoding);
+            }
+            return;
+        }
+
+        final ForkJoinPool pool = getPool();
+
+        // limit the number of bundles held in memory, waiting to be emitted
+
+        final Deque<BundleTask> pending = new ArrayDeque<>();
+        final Iterator<MavenProject> i = projects.iterator();
+
+        while (i.hasNext() || !pending.isEmpty()) {
+            while (i.hasNext() && pending.size() < this.threads) {
+                final MavenProject project = i.next();
+                final BundleTask task = new BundleTask(project.getArtifactId(), project, includes, excludes);
+                pool.execute(task);
+                pending.add(task);
+            }
+
+            final BundleTask task = pending.poll();
+            final AnalysisResult result = join(task);
+            emit(visitor, result, createLocator(task.project, srcEncoding));
+        }
+    }
+
+    private ISourceFileLocator createLocator(final MavenProject project, final String srcEncoding) {
+        if (!this.sourcesRequired) {
+            // none of the formatters will read source files
+            return new NoSourceLocator();
+        }
+        return new SourceFileCollection(project, srcEncoding);
     }
 
     private void processProject(final IReportGroupVisitor visitor, final String bundeName, final MavenProject project,
             final List<String> includes, final List<String> excludes, final ISourceFileLocator locator)
             throws IOException {
+        emit(visitor, analyze(bundeName, project, includes, excludes), locator);
+    }
+
+    private void emit(final IReportGroupVisitor visitor, final AnalysisResult result,
+            final ISourceFileLocator locator) throws IOException {
+        if (this.changedClasses != null && isEmpty(result.bundle)) {
+            this.log.debug(format("Skipping bundle '%s', it contains no changed classes", result.bundle.getName()));
+            return;
+        }
+
+        if (result.bundle instanceof StreamingBundleCoverage) {
+            emitStreaming(visitor, (StreamingBundleCoverage) result.bundle, result.metrics, locator);
+            return;
+        }
+
+        logBundleInfo(result.bundle, result.noMatch);
+
+        final long start = System.nanoTime();
+        visitor.visitBundle(result.bundle, locator);
+
+        if (result.metrics != null) {
+            result.metrics.written(System.nanoTime() - start);
+            this.metrics.addBundle(result.metrics);
+        }
+    }
+
+    private void emitStreaming(final IReportGroupVisitor visitor, final StreamingBundleCoverage bundle,
+            final Metrics.Bundle metrics, final ISourceFileLocator locator) throws IOException {
+
+        // classes are analyzed while the bundle is written
+
+        final long start = System.nanoTime();
+        try {
+            visitor.visitBundle(bundle, locator);
+        } catch (final AnalysisException e) {
+            throw e.getCause();
+        }
+
+        if (!bundle.isComplete()) {
+            throw new IllegalStateException(
+                    format("Bundle '%s' was not written by any formatter supporting streaming", bundle.getName()));
+        }
+
+        logBundleInfo(bundle, bundle.getNoMatchClasses());
+
+        if (metrics != null) {
+            metrics.analyzed(bundle.getClassCounter().getTotalCount());
+            metrics.written(System.nanoTime() - start);
+            this.metrics.addBundle(metrics);
+        }
+    }
+
+    private static boolean isEmpty(final IBundleCoverage bundle) {
+        if (bundle instanceof StreamingBundleCoverage) {
+            return ((StreamingBundleCoverage) bundle).isEmpty();
+        }
+        return bundle.getClassCounter().getTotalCount() == 0;
+    }
+
+    private AnalysisResult analyze(final String bundeName, final MavenProject project, final List<String> includes,
+            final List<String> excludes) throws IOException {
+        final Metrics.Bundle metrics = this.metrics != null ? Metrics.startBundle(bundeName) : null;
+
+        if (this.streaming) {
+            return analyzeStreaming(bundeName, project, includes, excludes, metrics);
+        }
+
         final CoverageBuilder builder = new CoverageBuilder();
         final File classesDir = new File(project.getBuild().getOutputDirectory());
 
-        if (classesDir.isDirectory()) {
-            final Analyzer analyzer = new Analyzer(this.loader.getExecutionDataStore(), builder);
-            final FileFilter filter = new FileFilter(includes, excludes);
-            for (final File file : filter.getFiles(classesDir)) {
-                analyzer.analyzeAll(file);
+        if (classesDir.isDirectory() && metrics == null && this.threads <= 1 && this.fileLists == null) {
+            // analyze the files while scanning
+
+            final Analyzer analyzer = new Analyzer(getExecutionDataStore(), builder);
+            final Set<String> changed = this.changedClasses;
+            new FileFilter(includes, excludes).visitFiles(classesDir, new FileFilter.Visitor() {
+
+                @Override
+                public void visitFile(final String name, final File file) throws IOException {
+                    if (changed == null || ChangedClasses.matches(changed, name)) {
+                        analyzeFile(analyzer, builder, file);
+                    }
+                }
+            });
+        } else if (classesDir.isDirectory()) {
+            final List<File> files = filterChanged(classesDir, getFiles(classesDir, includes, excludes));
+            if (metrics != null) {
+                metrics.scanned(files);
             }
+
+            analyzeFiles(files, builder);
         }
 
         final IBundleCoverage bundle = builder.getBundle(bundeName);
-        logBundleInfo(bundle, builder.getNoMatchClasses());
+        if (metrics != null) {
+            metrics.analyzed(bundle.getClassCounter().getTotalCount());
+        }
 
-        visitor.visitBundle(bundle, locator);
+        return new AnalysisResult(bundle, builder.getNoMatchClasses(), metrics);
+    }
+
+    private AnalysisResult analyzeStreaming(final String bundeName, final MavenProject project,
+            final List<String> includes, final List<String> excludes, final Metrics.Bundle metrics)
+            throws IOException {
+
+        final File classesDir = new File(project.getBuild().getOutputDirectory());
+
+        final List<List<File>> groups = new ArrayList<>();
+        if (classesDir.isDirectory()) {
+            final List<File> files = filterChanged(classesDir, getFiles(classesDir, includes, excludes));
+            if (metrics != null) {
+                metrics.scanned(files);
+            }
+
+            // group by directory, which is the package for well formed output
+
+            final Path base = classesDir.toPath();
+            final Map<String, List<File>> packages = new TreeMap<>();
+            for (final File file : files) {
+                final Path parent = base.relativize(file.toPath()).getParent();
+                final String name = parent != null
+                        ? stripVersionPrefix(parent.toString().replace(File.separatorChar, '/')) : "";
+                List<File> group = packages.get(name);
+                if (group == null) {
+                    group = new ArrayList<>();
+                    packages.put(name, group);
+                }
+                group.add(file);
+            }
+            groups.addAll(packages.values());
+        }
+
+        final StreamingBundleCoverage bundle = new StreamingBundleCoverage(bundeName, groups,
+                new StreamingBundleCoverage.Analysis() {
+
+                    @Override
+                    public CoverageBuilder analyze(final List<File> files) throws IOException {
+                        final CoverageBuilder builder = new CoverageBuilder();
+                        analyzeFiles(files, builder);
+                        return builder;
+                    }
+                });
+
+        return new AnalysisResult(bundle, Collections.<IClassCoverage> emptyList(), metrics);
+    }
+
+    private void analyzeFiles(final List<File> files, final CoverageBuilder builder) throws IOException {
+        if (this.threads <= 1 || files.size() <= CHUNK_SIZE) {
+            final Analyzer analyzer = new Analyzer(getExecutionDataStore(), builder);
+            for (final File file : files) {
+                analyzeFile(analyzer, builder, file);
+            }
+            return;
+        }
+
+        final List<ChunkTask> tasks = new ArrayList<>();
+        for (int i = 0; i < files.size(); i += CHUNK_SIZE) {
+            tasks.add(new ChunkTask(files.subList(i, Math.min(i + CHUNK_SIZE, files.size()))));
+        }
+        if (ForkJoinTask.inForkJoinPool()) {
+            ForkJoinTask.invokeAll(tasks);
+        } else {
+            for (final ChunkTask task : tasks) {
+                getPool().execute(task);
+            }
+        }
+
+        // feed the builder in the original order of the files
+
+        for (final ChunkTask task : tasks) {
+            for (final IClassCoverage coverage : join(task)) {
+                builder.visitCoverage(coverage);
+            }
+        }
+    }
+
+    private List<File> getFiles(final File classesDir, final List<String> includes, final List<String> excludes)
+            throws IOException {
+        if (this.fileLists == null) {
+            return scanFiles(classesDir, includes, excludes);
+        }
+
+        final String key = classesDir.getAbsolutePath();
+        List<File> result = this.fileLists.get(key);
+        if (result == null) {
+            result = scanFiles(classesDir, includes, excludes);
+            final List<File> previous = this.fileLists.putIfAbsent(key, result);
+            if (previous != null) {
+                result = previous;
+            }
+        }
+        return result;
+    }
+
+    private List<File> scanFiles(final File classesDir, final List<String> includes, final List<String> excludes)
+            throws IOException {
+        final FileFilter filter = new FileFilter(includes, excludes);
+        if (this.threads <= 1) {
+            return filter.getFiles(classesDir);
+        }
+        return filter.getFiles(classesDir, getPool());
+    }
+
+    private List<File> filterChanged(final File classesDir, final List<File> files) {
+        if (this.changedClasses == null) {
+            return files;
+        }
+
+        final Path base = classesDir.toPath();
+        final List<File> result = new ArrayList<>();
+        for (final File file : files) {
+            if (ChangedClasses.matches(this.changedClasses, base.relativize(file.toPath()).toString())) {
+                result.add(file);
+            }
+        }
+        return result;
+    }
+
+    private void analyzeFile(final Analyzer analyzer, final ICoverageVisitor visitor, final File file)
+            throws IOException {
+        if (this.cache != null && file.getName().endsWith(".class")) {
+            this.cache.analyze(file, getExecutionDataStore(), visitor);
+        } else {
+            analyzer.analyzeAll(file);
+        }
+    }
+
+    ExecutionDataStore getExecutionDataStore() {
+        return this.executionData;
+    }
+
+    private ForkJoinPool getPool() {
+        if (this.pool == null) {
+            this.pool = new ForkJoinPool(this.threads);
+        }
+        return this.pool;
+    }
+
+    /**
+     * Wait for a task, unwrapping its failure.
+     *
+     * @param task
+     *            the task to wait for
+     * @return the result of the task
+     * @throws IOException
+     *             if the task failed, or waiting was interrupted
+     */
+    static <T> T join(final Future<T> task) throws IOException {
+        try {
+            return task.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for task", e);
+        } catch (final ExecutionException e) {
+            for (Throwable t = e.getCause(); t != null; t = t.getCause()) {
+                if (t instanceof IOException) {
+                    throw (IOException) t;
+                }
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException("Failed to execute task", e.getCause());
+        }
+    }
+
+    private static class AnalysisResult {
+        private final IBundleCoverage bundle;
+        private final Collection<IClassCoverage> noMatch;
+        private final Metrics.Bundle metrics;
+
+        public AnalysisResult(final IBundleCoverage bundle, final Collection<IClassCoverage> noMatch,
+                final Metrics.Bundle metrics) {
+            this.bundle = bundle;
+            this.noMatch = noMatch;
+            this.metrics = metrics;
+        }
+    }
+
+    static class AnalysisException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public AnalysisException(final IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+    /**
+     * Analyzes a full bundle.
+     */
+    private class BundleTask extends RecursiveTask<AnalysisResult> {
+        private static final long serialVersionUID = 1L;
+
+        private final String bundleName;
+        private final MavenProject project;
+        private final List<String> includes;
+        private final List<String> excludes;
+
+        public BundleTask(final String bundleName, final MavenProject project, final List<String> includes,
+                final List<String> excludes) {
+            this.bundleName = bundleName;
+            this.project = project;
+            this.includes = includes;
+            this.excludes = excludes;
+        }
+
+        @Override
+        protected AnalysisResult compute() {
+            try {
+                return analyze(this.bundleName, this.project, this.includes, this.excludes);
+            } catch (final IOException e) {
+                throw new AnalysisException(e);
+            }
+        }
+    }
+
+    /**
+     * Analyzes a chunk of class files of a bundle, recording the results in
+     * the order they were reported by the analyzer.
+     */
+    private class ChunkTask extends RecursiveTask<List<IClassCoverage>> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<File> files;
+
+        public ChunkTask(final List<File> files) {
+            this.files = files;
+        }
+
+        @Override
+        protected List<IClassCoverage> compute() {
+            final List<IClassCoverage> result = new ArrayList<>();
+            final ICoverageVisitor visitor = new ICoverageVisitor() {
+
+                @Override
+                public void visitCoverage(final IClassCoverage coverage) {
+                    result.add(coverage);
+                }
+            };
+            final Analyzer analyzer = new Analyzer(getExecutionDataStore(), visitor);
+            try {
+                for (final File file : this.files) {
+                    analyzeFile(analyzer, visitor, file);
+                }
+            } catch (final IOException e) {
+                throw new AnalysisException(e);
+            }
+            return result;
+        }
     }
 
     private void logBundleInfo(final IBundleCoverage bundle, final Collection<IClassCoverage> nomatch) {
@@ -226,31 +1329,49 @@ final class ReportSupport {
         }
     }
 
-    private class SourceFileCollection implements ISourceFileLocator {
+    /**
+     * Locates source files in the compile source roots of a project. <br>
+     * The source roots are indexed with a single walk, when the first source
+     * file is requested, or taken from the shared index.
+     */
+    private class SourceFileCollection implements SourceFileIndex.Locator {
 
-        private final List<File> sourceRoots;
+        private final MavenProject project;
         private final String encoding;
 
+        private Map<String, File> index;
+
         public SourceFileCollection(final MavenProject project, final String encoding) {
-            this.sourceRoots = getCompileSourceRoots(project);
+            this.project = project;
             this.encoding = encoding;
         }
 
         @Override
         public Reader getSourceFile(final String packageName, final String fileName) throws IOException {
+            final File file = getFile(packageName, fileName);
+            if (file == null) {
+                return null;
+            }
+            return new BufferedReader(new InputStreamReader(new FileInputStream(file), this.encoding));
+        }
+
+        @Override
+        public File getFile(final String packageName, final String fileName) throws IOException {
             final String r;
             if (packageName.length() > 0) {
                 r = packageName + '/' + fileName;
             } else {
                 r = fileName;
             }
-            for (final File sourceRoot : this.sourceRoots) {
-                final File file = new File(sourceRoot, r);
-                if (file.exists() && file.isFile()) {
-                    return new InputStreamReader(new FileInputStream(file), this.encoding);
-                }
+            return getIndex().get(r);
+        }
+
+        private synchronized Map<String, File> getIndex() throws IOException {
+            if (this.index == null) {
+                final SourceFileIndex shared = ReportSupport.this.sourceFileIndex;
+                this.index = shared != null ? shared.get(this.project) : indexSourceRoots(this.project);
             }
-            return null;
+            return this.index;
         }
 
         @Override
@@ -259,7 +1380,45 @@ final class ReportSupport {
         }
     }
 
-    private static List<File> getCompileSourceRoots(final MavenProject project) {
+    /**
+     * Index the source files of the compile source roots of a project.
+     *
+     * @param project
+     *            the project
+     * @return the source files, by their path relative to the source root
+     * @throws IOException
+     *             if walking the source roots fails
+     */
+    static Map<String, File> indexSourceRoots(final MavenProject project) throws IOException {
+        final Map<String, File> index = new HashMap<>();
+        for (final File sourceRoot : getCompileSourceRoots(project)) {
+            indexSourceRoot(index, sourceRoot.toPath());
+        }
+        return index;
+    }
+
+    private static void indexSourceRoot(final Map<String, File> index, final Path sourceRoot) throws IOException {
+        if (!Files.isDirectory(sourceRoot)) {
+            return;
+        }
+
+        Files.walkFileTree(sourceRoot, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    final String name = sourceRoot.relativize(file).toString().replace(File.separatorChar, '/');
+                    // the first source root wins
+                    if (!index.containsKey(name)) {
+                        index.put(name, file.toFile());
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    static List<File> getCompileSourceRoots(final MavenProject project) {
         final List<File> result = new ArrayList<>();
         for (final Object path : project.getCompileSourceRoots()) {
             result.add(resolvePath(project, (String) path));
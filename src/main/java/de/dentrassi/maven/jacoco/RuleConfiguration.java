@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import java.util.List;
+
+import org.codehaus.plexus.util.StringUtils;
+import org.jacoco.core.analysis.ICoverageNode.ElementType;
+import org.jacoco.report.check.Limit;
+import org.jacoco.report.check.Rule;
+
+/**
+ * The configuration of a coverage rule of the <code>check</code> goal. <br>
+ * Uses the same elements as the rules of the Jacoco Maven plugin:
+ *
+ * <pre>
+ * &lt;rule&gt;
+ *   &lt;element&gt;BUNDLE&lt;/element&gt;
+ *   &lt;limits&gt;
+ *     &lt;limit&gt;
+ *       &lt;counter&gt;LINE&lt;/counter&gt;
+ *       &lt;value&gt;COVEREDRATIO&lt;/value&gt;
+ *       &lt;minimum&gt;0.80&lt;/minimum&gt;
+ *     &lt;/limit&gt;
+ *   &lt;/limits&gt;
+ * &lt;/rule&gt;
+ * </pre>
+ */
+public class RuleConfiguration {
+
+    private final Rule rule = new Rule();
+
+    /**
+     * Set the element type the rule applies to.
+     *
+     * @param element
+     *            the element type, e.g. <code>BUNDLE</code> or
+     *            <code>CLASS</code>
+     */
+    public void setElement(final String element) {
+        this.rule.setElement(ElementType.valueOf(element));
+    }
+
+    /**
+     * Set the names of the elements the rule applies to.
+     *
+     * @param includes
+     *            the patterns of names, may contain the wildcards
+     *            <code>*</code> and <code>?</code>
+     */
+    public void setIncludes(final List<String> includes) {
+        this.rule.setIncludes(StringUtils.join(includes.iterator(), ":"));
+    }
+
+    /**
+     * Set the names of the elements the rule doesn't apply to.
+     *
+     * @param excludes
+     *            the patterns of names, may contain the wildcards
+     *            <code>*</code> and <code>?</code>
+     */
+    public void setExcludes(final List<String> excludes) {
+        this.rule.setExcludes(StringUtils.join(excludes.iterator(), ":"));
+    }
+
+    /**
+     * Set the limits of the rule.
+     *
+     * @param limits
+     *            the limits to check
+     */
+    public void setLimits(final List<Limit> limits) {
+        this.rule.setLimits(limits);
+    }
+
+    /**
+     * Get the configured rule.
+     *
+     * @return the rule
+     */
+    public Rule getRule() {
+        return this.rule;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[element: %s, includes: %s, excludes: %s]", this.rule.getElement(),
+                this.rule.getIncludes(), this.rule.getExcludes());
+    }
+}
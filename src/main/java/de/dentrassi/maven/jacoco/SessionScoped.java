@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import org.apache.maven.execution.MavenSession;
+import org.eclipse.aether.SessionData;
+
+/**
+ * Access to instances which are shared for the lifetime of a build session.
+ * <br>
+ * The instances are stored in the data of the repository session, which is
+ * discarded by Maven at the end of the build. The type is used as key, so
+ * different versions of this plugin will not share instances.
+ */
+final class SessionScoped {
+
+    /**
+     * Create a new instance, when none is present in the session.
+     *
+     * @param <T>
+     *            the type of the instance
+     */
+    public interface Factory<T> {
+        T create();
+    }
+
+    private SessionScoped() {
+    }
+
+    /**
+     * Get the instance of a type, creating it if necessary.
+     *
+     * @param session
+     *            the current session
+     * @param type
+     *            the type of the instance, used as key
+     * @param factory
+     *            the factory to create a new instance
+     * @return the instance, shared with all other users of the same session
+     */
+    public static <T> T get(final MavenSession session, final Class<T> type, final Factory<T> factory) {
+        final SessionData data = session.getRepositorySession().getData();
+
+        while (true) {
+            final Object current = data.get(type);
+            if (current != null) {
+                return type.cast(current);
+            }
+
+            final T value = factory.create();
+            if (data.set(type, null, value)) {
+                return value;
+            }
+        }
+    }
+}
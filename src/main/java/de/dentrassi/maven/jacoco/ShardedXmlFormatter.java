@@ -0,0 +1,346 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.ICoverageNode;
+import org.jacoco.core.analysis.ICoverageNode.CounterEntity;
+import org.jacoco.core.analysis.IPackageCoverage;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.internal.analysis.BundleCoverageImpl;
+import org.jacoco.report.IReportGroupVisitor;
+import org.jacoco.report.IReportVisitor;
+import org.jacoco.report.ISourceFileLocator;
+import org.jacoco.report.internal.xml.ReportElement;
+import org.jacoco.report.internal.xml.XMLCoverageWriter;
+
+/**
+ * A formatter writing one XML report per bundle. <br>
+ * Each shard is a complete Jacoco XML report, containing the packages of a
+ * single bundle. Bundles with more classes than configured are split into one
+ * shard per package. Additionally an index file, <code>index.json</code>,
+ * lists all shards together with their counters. Groups are not written,
+ * shards are only named after their bundle.
+ * <p>
+ * If an executor is set, shards are written by the executor, while the next
+ * bundles are analyzed. The number of shards waiting to be written is limited,
+ * to limit the number of bundles held in memory. Streaming bundles are written
+ * by the visiting thread, but their packages may still be written by the
+ * executor, when the bundle is split.
+ * </p>
+ * <p>
+ * The shards are written using internal classes of the Jacoco report, so the
+ * formatter requires the version of Jacoco the plugin is built with.
+ * </p>
+ */
+final class ShardedXmlFormatter {
+
+    /**
+     * The name of the index file.
+     */
+    public static final String INDEX_FILE = "index.json";
+
+    private String encoding = "UTF-8";
+    private boolean pretty;
+    private Compression compression = Compression.NONE;
+    private int maxClasses;
+
+    private ExecutorService executor;
+    private int maxPending = 1;
+
+    public ShardedXmlFormatter() {
+        JacocoVersion.requireBuildVersion("The sharded XML report");
+    }
+
+    public void setOutputEncoding(final String encoding) {
+        this.encoding = encoding;
+    }
+
+    public void setPretty(final boolean pretty) {
+        this.pretty = pretty;
+    }
+
+    public void setCompression(final Compression compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * Set the maximum number of classes of a shard.
+     *
+     * @param maxClasses
+     *            bundles with more classes are split into one shard per
+     *            package, zero or less never splits bundles
+     */
+    public void setMaxClasses(final int maxClasses) {
+        this.maxClasses = maxClasses;
+    }
+
+    /**
+     * Set the executor writing shards.
+     *
+     * @param executor
+     *            the executor, {@code null} to write shards in the visiting
+     *            thread
+     * @param maxPending
+     *            the maximum number of shards waiting to be written
+     */
+    public void setExecutor(final ExecutorService executor, final int maxPending) {
+        this.executor = executor;
+        this.maxPending = Math.max(1, maxPending);
+    }
+
+    /**
+     * Create a visitor writing the shards. <br>
+     * The directory is cleared before the shards are written.
+     *
+     * @param directory
+     *            the directory to write the shards to
+     * @return the report visitor
+     * @throws IOException
+     *             if the directory cannot be prepared
+     */
+    public IReportVisitor createVisitor(final File directory) throws IOException {
+        if (directory.exists()) {
+            FileUtils.deleteDirectory(directory);
+        }
+        if (!directory.mkdirs()) {
+            throw new IOException("Failed to create shard directory: " + directory);
+        }
+
+        return new Visitor(directory);
+    }
+
+    private class Visitor implements IReportVisitor {
+
+        private final File directory;
+
+        private final List<Shard> shards = new ArrayList<>();
+        private final Set<String> fileNames = new HashSet<>();
+        private final Deque<Future<?>> pending = new ArrayDeque<>();
+
+        private List<SessionInfo> sessionInfos = Collections.emptyList();
+
+        public Visitor(final File directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        public void visitInfo(final List<SessionInfo> sessionInfos, final Collection<ExecutionData> executionData) {
+            this.sessionInfos = sessionInfos;
+        }
+
+        @Override
+        public IReportGroupVisitor visitGroup(final String name) {
+            return this;
+        }
+
+        @Override
+        public void visitBundle(final IBundleCoverage bundle, final ISourceFileLocator locator) throws IOException {
+            if (!split(bundle)) {
+                final Shard shard = addShard(bundle.getName(), null);
+                if (bundle instanceof StreamingBundleCoverage) {
+                    // packages are analyzed while being written
+                    shard.write(bundle);
+                } else {
+                    submit(shard, bundle);
+                }
+                return;
+            }
+
+            for (final IPackageCoverage pkg : bundle.getPackages()) {
+                final Shard shard = addShard(bundle.getName(), pkg.getName());
+                submit(shard, new BundleCoverageImpl(bundle.getName(), Collections.singleton(pkg)));
+            }
+        }
+
+        private boolean split(final IBundleCoverage bundle) {
+            if (ShardedXmlFormatter.this.maxClasses <= 0) {
+                return false;
+            }
+            if (bundle instanceof StreamingBundleCoverage) {
+                return ((StreamingBundleCoverage) bundle).getClassFileCount() > ShardedXmlFormatter.this.maxClasses;
+            }
+            return bundle.getClassCounter().getTotalCount() > ShardedXmlFormatter.this.maxClasses;
+        }
+
+        private Shard addShard(final String bundleName, final String packageName) {
+            final String baseName;
+            if (packageName == null) {
+                baseName = safeName(bundleName);
+            } else {
+                baseName = safeName(bundleName) + "/"
+                        + (packageName.isEmpty() ? "default" : safeName(packageName.replace('/', '.')));
+            }
+
+            String name = baseName;
+            for (int i = 2; !this.fileNames.add(name); i++) {
+                name = baseName + "-" + i;
+            }
+
+            final Shard shard = new Shard(
+                    ShardedXmlFormatter.this.compression.getFile(new File(name + ".xml")).getPath().replace('\\', '/'),
+                    bundleName, packageName);
+            this.shards.add(shard);
+            return shard;
+        }
+
+        private void submit(final Shard shard, final IBundleCoverage bundle) throws IOException {
+            if (ShardedXmlFormatter.this.executor == null) {
+                shard.write(bundle);
+                return;
+            }
+
+            while (this.pending.size() >= ShardedXmlFormatter.this.maxPending) {
+                await(this.pending.poll());
+            }
+
+            this.pending.add(ShardedXmlFormatter.this.executor.submit(new Callable<Void>() {
+
+                @Override
+                public Void call() throws IOException {
+                    shard.write(bundle);
+                    return null;
+                }
+            }));
+        }
+
+        @Override
+        public void visitEnd() throws IOException {
+            while (!this.pending.isEmpty()) {
+                await(this.pending.poll());
+            }
+            writeIndex();
+        }
+
+        private void writeIndex() throws IOException {
+            final File file = new File(this.directory, INDEX_FILE);
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), UTF_8))) {
+                out.write("{\n  \"shards\": [");
+                String sep = "\n";
+                for (final Shard shard : this.shards) {
+                    out.write(sep);
+                    sep = ",\n";
+                    shard.writeIndexEntry(out);
+                }
+                out.write("\n  ]\n}\n");
+            }
+        }
+
+        private class Shard {
+            private final String fileName;
+            private final String bundleName;
+            private final String packageName;
+
+            private volatile ICoverageNode counters;
+
+            public Shard(final String fileName, final String bundleName, final String packageName) {
+                this.fileName = fileName;
+                this.bundleName = bundleName;
+                this.packageName = packageName;
+            }
+
+            public void write(final IBundleCoverage bundle) throws IOException {
+                final File file = new File(Visitor.this.directory, this.fileName);
+                file.getParentFile().mkdirs();
+
+                final String encoding = ShardedXmlFormatter.this.encoding;
+                try (OutputStream out = openOutput(file)) {
+                    final ReportElement report = new ReportElement(this.bundleName, out,
+                            ShardedXmlFormatter.this.pretty ? "UTF-8" : encoding);
+                    for (final SessionInfo info : Visitor.this.sessionInfos) {
+                        report.sessioninfo(info);
+                    }
+                    XMLCoverageWriter.writeBundle(bundle, report);
+                    report.close();
+                }
+
+                // streaming bundles only know their counters now
+                this.counters = bundle.getPlainCopy();
+            }
+
+            private OutputStream openOutput(final File file) throws IOException {
+                final OutputStream out = ShardedXmlFormatter.this.compression.open(file);
+                if (!ShardedXmlFormatter.this.pretty) {
+                    return out;
+                }
+                return new PrettyPrintOutputStream(out, ShardedXmlFormatter.this.encoding,
+                        "-//JACOCO//DTD Report 1.0//EN", "report.dtd");
+            }
+
+            public void writeIndexEntry(final Writer out) throws IOException {
+                out.write(format("    { \"file\": %s, \"bundle\": %s, \"package\": %s, \"counters\": {",
+                        Json.quote(this.fileName), Json.quote(this.bundleName),
+                        this.packageName != null ? Json.quote(this.packageName) : "null"));
+                String sep = " ";
+                for (final CounterEntity entity : CounterEntity.values()) {
+                    final ICounter counter = this.counters.getCounter(entity);
+                    out.write(format("%s%s: { \"covered\": %s, \"missed\": %s }", sep, Json.quote(entity.name()),
+                            Integer.valueOf(counter.getCoveredCount()), Integer.valueOf(counter.getMissedCount())));
+                    sep = ", ";
+                }
+                out.write(" } }");
+            }
+        }
+    }
+
+    private static void await(final Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing shards", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to write shard", e.getCause());
+        }
+    }
+
+    private static String safeName(final String name) {
+        final StringBuilder sb = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            if (Character.isLetterOrDigit(c) || c == '.' || c == '-' || c == '_') {
+                sb.append(c);
+            } else {
+                sb.append('_');
+            }
+        }
+        return sb.toString();
+    }
+}
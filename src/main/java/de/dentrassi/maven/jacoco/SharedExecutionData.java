@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.maven.execution.MavenSession;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfoStore;
+
+/**
+ * Execution data files, shared between the executions of a build session.
+ * <br>
+ * In a parallel build, multiple modules may create their reports from the
+ * same execution data file at the same time. Instead of each execution loading
+ * its own copy, the file is loaded once and shared. Entries are reference
+ * counted, and are discarded once the last execution released them. A file is
+ * identified by its path, size and last modification time, so a file which
+ * gets re-written is loaded again.
+ * <p>
+ * The loaded data must be treated as read-only by all users.
+ * </p>
+ */
+final class SharedExecutionData {
+
+    /**
+     * Loads an execution data file.
+     */
+    public interface Loader {
+        void load(File file, ExecutionDataStore executionData, SessionInfoStore sessionInfos) throws IOException;
+    }
+
+    /**
+     * A reference to a loaded execution data file.
+     */
+    public interface Handle {
+        ExecutionDataStore getExecutionData();
+
+        SessionInfoStore getSessionInfos();
+    }
+
+    private final Map<Key, Entry> entries = new HashMap<>();
+
+    /**
+     * Get the instance of the current build session.
+     *
+     * @param session
+     *            the build session
+     * @return the instance of the session
+     */
+    public static SharedExecutionData forSession(final MavenSession session) {
+        return SessionScoped.get(session, SharedExecutionData.class,
+                new SessionScoped.Factory<SharedExecutionData>() {
+
+                    @Override
+                    public SharedExecutionData create() {
+                        return new SharedExecutionData();
+                    }
+                });
+    }
+
+    /**
+     * Acquire a reference to an execution data file. <br>
+     * If the file is not yet loaded, it is loaded using the loader. If another
+     * thread is currently loading the file, this call waits for it to finish.
+     * The returned handle must be released when it is no longer used.
+     *
+     * @param file
+     *            the file to acquire
+     * @param loader
+     *            the loader to use if the file needs to be loaded
+     * @return the handle to the loaded data
+     * @throws IOException
+     *             if loading the file fails
+     */
+    public Handle acquire(final File file, final Loader loader) throws IOException {
+        final Key key = new Key(file);
+
+        final Entry entry;
+        final boolean load;
+        synchronized (this) {
+            Entry current = this.entries.get(key);
+            load = current == null;
+            if (load) {
+                current = new Entry(key);
+                this.entries.put(key, current);
+            }
+            current.references++;
+            entry = current;
+        }
+
+        if (load) {
+            try {
+                loader.load(file, entry.executionData, entry.sessionInfos);
+                entry.loaded(null);
+            } catch (final IOException | RuntimeException e) {
+                entry.loaded(e);
+                release(entry);
+                throw e;
+            }
+        } else {
+            try {
+                entry.await();
+            } catch (final IOException e) {
+                release(entry);
+                throw e;
+            }
+        }
+
+        return entry;
+    }
+
+    /**
+     * Release a reference to an execution data file.
+     *
+     * @param handle
+     *            the handle returned by {@link #acquire(File, Loader)}
+     */
+    public synchronized void release(final Handle handle) {
+        final Entry entry = (Entry) handle;
+        entry.references--;
+        if (entry.references <= 0 && this.entries.get(entry.key) == entry) {
+            this.entries.remove(entry.key);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("[files: %s]", Integer.valueOf(this.entries.size()));
+    }
+
+    private static class Entry implements Handle {
+        private final Key key;
+
+        private final ExecutionDataStore executionData = new ExecutionDataStore();
+        private final SessionInfoStore sessionInfos = new SessionInfoStore();
+
+        private final CountDownLatch loaded = new CountDownLatch(1);
+        private volatile Exception error;
+
+        /**
+         * Guarded by the {@link SharedExecutionData} instance.
+         */
+        private int references;
+
+        public Entry(final Key key) {
+            this.key = key;
+        }
+
+        public void loaded(final Exception error) {
+            this.error = error;
+            this.loaded.countDown();
+        }
+
+        public void await() throws IOException {
+            try {
+                this.loaded.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for execution data", e);
+            }
+            if (this.error != null) {
+                throw new IOException("Failed to load execution data file: " + this.key.path, this.error);
+            }
+        }
+
+        @Override
+        public ExecutionDataStore getExecutionData() {
+            return this.executionData;
+        }
+
+        @Override
+        public SessionInfoStore getSessionInfos() {
+            return this.sessionInfos;
+        }
+    }
+
+    private static class Key {
+        private final String path;
+        private final long length;
+        private final long lastModified;
+
+        public Key(final File file) {
+            this.path = file.getAbsolutePath();
+            this.length = file.length();
+            this.lastModified = file.lastModified();
+        }
+
+        @Override
+        public int hashCode() {
+            int result = this.path.hashCode();
+            result = 31 * result + Long.valueOf(this.length).hashCode();
+            result = 31 * result + Long.valueOf(this.lastModified).hashCode();
+            return result;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return this.path.equals(other.path) && this.length == other.length
+                    && this.lastModified == other.lastModified;
+        }
+    }
+}
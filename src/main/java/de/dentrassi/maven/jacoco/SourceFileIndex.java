@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.project.MavenProject;
+import org.jacoco.report.ISourceFileLocator;
+
+/**
+ * The source files of projects, shared between the executions of a build
+ * session. <br>
+ * Reports include the source files of all dependencies, so in a reactor the
+ * source roots of a module are needed by the reports of all modules depending
+ * on it. Each set of source roots is only walked once per build session.
+ * Source files created after a project was indexed are not found.
+ */
+final class SourceFileIndex {
+
+    /**
+     * A source file locator, which also provides the files it reads.
+     */
+    interface Locator extends ISourceFileLocator {
+
+        /**
+         * Find a source file.
+         *
+         * @param packageName
+         *            the VM name of the package
+         * @param fileName
+         *            the name of the source file
+         * @return the file, {@code null} if it wasn't found
+         * @throws IOException
+         *             if indexing the source files fails
+         */
+        public File getFile(String packageName, String fileName) throws IOException;
+    }
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Get the instance of the current build session.
+     *
+     * @param session
+     *            the build session
+     * @return the instance of the session
+     */
+    public static SourceFileIndex forSession(final MavenSession session) {
+        return SessionScoped.get(session, SourceFileIndex.class, new SessionScoped.Factory<SourceFileIndex>() {
+
+            @Override
+            public SourceFileIndex create() {
+                return new SourceFileIndex();
+            }
+        });
+    }
+
+    /**
+     * Get the source files of a project. <br>
+     * If the project is not yet indexed, its source roots are walked. Other
+     * threads requesting the same project wait for the walk to finish.
+     *
+     * @param project
+     *            the project
+     * @return the source files, by their path relative to the source root,
+     *         must not be modified
+     * @throws IOException
+     *             if walking the source roots fails
+     */
+    public Map<String, File> get(final MavenProject project) throws IOException {
+        // the source roots may change during the build
+        final String key = ReportSupport.getCompileSourceRoots(project).toString();
+
+        Entry entry = this.entries.get(key);
+        if (entry == null) {
+            final Entry newEntry = new Entry();
+            entry = this.entries.putIfAbsent(key, newEntry);
+            if (entry == null) {
+                entry = newEntry;
+            }
+        }
+
+        return entry.get(project);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[projects: %s]", Integer.valueOf(this.entries.size()));
+    }
+
+    private static class Entry {
+        private Map<String, File> index;
+
+        public synchronized Map<String, File> get(final MavenProject project) throws IOException {
+            if (this.index == null) {
+                this.index = ReportSupport.indexSourceRoots(project);
+            }
+            return this.index;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.analysis.CoverageNodeImpl;
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.IPackageCoverage;
+
+/**
+ * A bundle which analyzes its classes package by package, while its packages
+ * are being iterated. <br>
+ * Only the coverage of the current package is held in memory. The class files
+ * are grouped by their directory, each group is analyzed when the iteration
+ * reaches it. The counters of the bundle are only complete once all packages
+ * have been iterated, and the packages can only be iterated once.
+ */
+final class StreamingBundleCoverage extends CoverageNodeImpl implements IBundleCoverage {
+
+    /**
+     * Analyzes the class files of a package.
+     */
+    public interface Analysis {
+        CoverageBuilder analyze(List<File> files) throws IOException;
+    }
+
+    private final List<List<File>> groups;
+    private final Analysis analysis;
+
+    private final List<IClassCoverage> noMatch = new ArrayList<>();
+
+    private boolean iterated;
+    private boolean complete;
+
+    /**
+     * Create a new bundle.
+     *
+     * @param name
+     *            the name of the bundle
+     * @param groups
+     *            the class files, grouped by package
+     * @param analysis
+     *            the analysis of a group of class files
+     */
+    public StreamingBundleCoverage(final String name, final List<List<File>> groups, final Analysis analysis) {
+        super(ElementType.BUNDLE, name);
+        this.groups = groups;
+        this.analysis = analysis;
+    }
+
+    /**
+     * Test if the bundle has no class files.
+     *
+     * @return {@code true} if there are no class files to analyze
+     */
+    public boolean isEmpty() {
+        return this.groups.isEmpty();
+    }
+
+    /**
+     * Get the number of class files of the bundle.
+     *
+     * @return the number of class files to analyze
+     */
+    public int getClassFileCount() {
+        int result = 0;
+        for (final List<File> group : this.groups) {
+            result += group.size();
+        }
+        return result;
+    }
+
+    /**
+     * Test if all packages have been iterated.
+     *
+     * @return {@code true} if the counters of the bundle are complete
+     */
+    public boolean isComplete() {
+        return this.complete;
+    }
+
+    /**
+     * Get the classes which did not match the execution data.
+     *
+     * @return the classes of all packages iterated so far
+     */
+    public Collection<IClassCoverage> getNoMatchClasses() {
+        return Collections.unmodifiableList(this.noMatch);
+    }
+
+    @Override
+    public Collection<IPackageCoverage> getPackages() {
+        return new AbstractCollection<IPackageCoverage>() {
+
+            @Override
+            public Iterator<IPackageCoverage> iterator() {
+                return packages();
+            }
+
+            @Override
+            public int size() {
+                return StreamingBundleCoverage.this.groups.size();
+            }
+        };
+    }
+
+    private Iterator<IPackageCoverage> packages() {
+        if (this.iterated) {
+            throw new IllegalStateException("The packages of a streaming bundle can only be iterated once");
+        }
+        this.iterated = true;
+
+        final Iterator<List<File>> groups = this.groups.iterator();
+
+        return new Iterator<IPackageCoverage>() {
+
+            private Iterator<IPackageCoverage> current = Collections.<IPackageCoverage> emptyList().iterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!this.current.hasNext()) {
+                    if (!groups.hasNext()) {
+                        StreamingBundleCoverage.this.complete = true;
+                        return false;
+                    }
+                    this.current = analyze(groups.next()).iterator();
+                }
+                return true;
+            }
+
+            @Override
+            public IPackageCoverage next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final IPackageCoverage result = this.current.next();
+                increment(result);
+                return result;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private Collection<IPackageCoverage> analyze(final List<File> files) {
+        final CoverageBuilder builder;
+        try {
+            builder = this.analysis.analyze(files);
+        } catch (final IOException e) {
+            throw new ReportSupport.AnalysisException(e);
+        }
+        this.noMatch.addAll(builder.getNoMatchClasses());
+        return builder.getBundle(getName()).getPackages();
+    }
+}
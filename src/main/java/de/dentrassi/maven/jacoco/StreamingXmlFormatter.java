@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.List;
+
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.report.IReportGroupVisitor;
+import org.jacoco.report.IReportVisitor;
+import org.jacoco.report.ISourceFileLocator;
+import org.jacoco.report.internal.AbstractGroupVisitor;
+import org.jacoco.report.internal.xml.ReportElement;
+import org.jacoco.report.internal.xml.XMLCoverageWriter;
+import org.jacoco.report.internal.xml.XMLGroupVisitor;
+
+/**
+ * An XML formatter supporting {@link StreamingBundleCoverage}. <br>
+ * The output is the same as the one of the Jacoco <code>XMLFormatter</code>.
+ * However a group visitor adds the counters of a bundle to the total of the
+ * group before writing the bundle. The counters of a streaming bundle are only
+ * known after its packages have been written, so they get added afterwards.
+ * <p>
+ * The report is written using internal classes of the Jacoco report, so the
+ * formatter requires the version of Jacoco the plugin is built with.
+ * </p>
+ */
+final class StreamingXmlFormatter {
+
+    private final String encoding;
+
+    public StreamingXmlFormatter(final String encoding) {
+        JacocoVersion.requireBuildVersion("The streaming XML report");
+        this.encoding = encoding;
+    }
+
+    public IReportVisitor createVisitor(final OutputStream output) {
+        return new IReportVisitor() {
+
+            private ReportElement report;
+            private List<SessionInfo> sessionInfos;
+            private GroupVisitor groupVisitor;
+
+            @Override
+            public void visitInfo(final List<SessionInfo> sessionInfos,
+                    final Collection<ExecutionData> executionData) {
+                this.sessionInfos = sessionInfos;
+            }
+
+            @Override
+            public void visitBundle(final IBundleCoverage bundle, final ISourceFileLocator locator)
+                    throws IOException {
+                createRootElement(bundle.getName());
+                XMLCoverageWriter.writeBundle(bundle, this.report);
+            }
+
+            @Override
+            public IReportGroupVisitor visitGroup(final String name) throws IOException {
+                createRootElement(name);
+                this.groupVisitor = new GroupVisitor(this.report, name);
+                return this.groupVisitor;
+            }
+
+            private void createRootElement(final String name) throws IOException {
+                this.report = new ReportElement(name, output, StreamingXmlFormatter.this.encoding);
+                for (final SessionInfo info : this.sessionInfos) {
+                    this.report.sessioninfo(info);
+                }
+            }
+
+            @Override
+            public void visitEnd() throws IOException {
+                if (this.groupVisitor != null) {
+                    this.groupVisitor.visitEnd();
+                }
+                this.report.close();
+            }
+        };
+    }
+
+    private static class GroupVisitor extends XMLGroupVisitor {
+
+        public GroupVisitor(final ReportElement element, final String name) throws IOException {
+            super(element, name);
+        }
+
+        @Override
+        protected void handleBundle(final IBundleCoverage bundle, final ISourceFileLocator locator)
+                throws IOException {
+            super.handleBundle(bundle, locator);
+            if (bundle instanceof StreamingBundleCoverage) {
+                // was added to the total before its counters were known
+                this.total.increment(bundle);
+            }
+        }
+
+        @Override
+        protected AbstractGroupVisitor handleGroup(final String name) throws IOException {
+            return new GroupVisitor(this.element.group(name), name);
+        }
+    }
+}
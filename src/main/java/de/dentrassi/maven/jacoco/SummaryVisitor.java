@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import static java.lang.String.format;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.maven.plugin.logging.Log;
+import org.jacoco.core.analysis.CoverageNodeImpl;
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.ICoverageNode;
+import org.jacoco.core.analysis.ICoverageNode.CounterEntity;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.report.IReportGroupVisitor;
+import org.jacoco.report.IReportVisitor;
+import org.jacoco.report.ISourceFileLocator;
+
+/**
+ * A report visitor logging a summary of the coverage. <br>
+ * A line is logged for each bundle, and one for the total of the report.
+ */
+final class SummaryVisitor implements IReportVisitor {
+
+    private static final CounterEntity[] ENTITIES = { CounterEntity.INSTRUCTION, CounterEntity.BRANCH,
+            CounterEntity.LINE, CounterEntity.METHOD, CounterEntity.CLASS };
+
+    private final Log log;
+
+    private final CoverageNodeImpl total = new CoverageNodeImpl(ICoverageNode.ElementType.GROUP, "total");
+
+    public SummaryVisitor(final Log log) {
+        this.log = log;
+    }
+
+    @Override
+    public void visitInfo(final List<SessionInfo> sessionInfos, final Collection<ExecutionData> executionData) {
+    }
+
+    @Override
+    public void visitBundle(final IBundleCoverage bundle, final ISourceFileLocator locator) {
+        this.total.increment(bundle);
+        this.log.info(format("Coverage of bundle '%s': %s", bundle.getName(), summarize(bundle)));
+    }
+
+    @Override
+    public IReportGroupVisitor visitGroup(final String name) {
+        return this;
+    }
+
+    @Override
+    public void visitEnd() {
+        this.log.info(format("Total coverage: %s", summarize(this.total)));
+    }
+
+    private static String summarize(final ICoverageNode node) {
+        final StringBuilder sb = new StringBuilder();
+        for (final CounterEntity entity : ENTITIES) {
+            final ICounter counter = node.getCounter(entity);
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(entity.name().toLowerCase(Locale.ROOT)).append(' ');
+            if (counter.getTotalCount() == 0) {
+                sb.append("n/a");
+            } else {
+                sb.append(format(Locale.ROOT, "%.1f%% (%s/%s)", Double.valueOf(counter.getCoveredRatio() * 100.0),
+                        Integer.valueOf(counter.getCoveredCount()), Integer.valueOf(counter.getTotalCount())));
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Red Hat Inc and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Jens Reimann - initial API and implementation
+ *******************************************************************************/
+package de.dentrassi.maven.jacoco;
+
+import static java.lang.String.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Convert binary execution data of all modules of the reactor to XML reports
+ * including dependencies. <br>
+ * This mojo runs once for the whole reactor, after all modules have been
+ * built. For every module which has execution data, it writes the same report
+ * as the <code>xml</code> goal. Class directories are only scanned once, and
+ * the analysis of classes is shared between the reports of all modules using
+ * the analysis cache, so the cache size should be large enough to hold the
+ * classes of the reactor. Unless configured, this goal uses a cache size of
+ * 256 megabytes.
+ * <p>
+ * The report of a module only contains the coverage of its own execution
+ * data, so a class which is executed by the tests of several modules is still
+ * analyzed once for each of them.
+ * </p>
+ * <p>
+ * The goal is meant to be invoked from the command line, e.g.
+ * <code>mvn verify jacoco-extras:xml-aggregate</code>.
+ * </p>
+ *
+ * @since 0.1.7
+ */
+@Mojo(name = "xml-aggregate", aggregator = true, requiresProject = true, threadSafe = true)
+public class XmlAggregateMojo extends AbstractReportMojo {
+
+    /**
+     * The jacoco execution data of each module, relative to the build
+     * directory of the module. <br>
+     * Modules without execution data will be skipped. The name may contain
+     * wildcards, in which case all matching files will be loaded and merged.
+     */
+    @Parameter(property = PROP_PREFIX + "execFileName", defaultValue = "jacoco.exec", required = true)
+    private String execFileName;
+
+    /**
+     * The output XML file of each module, relative to the build directory of
+     * the module.
+     */
+    @Parameter(property = PROP_PREFIX + "xmlFileName", defaultValue = "jacoco.xml", required = true)
+    private String xmlFileName;
+
+    public void setExecFileName(final String execFileName) {
+        this.execFileName = execFileName;
+    }
+
+    public void setXmlFileName(final String xmlFileName) {
+        this.xmlFileName = xmlFileName;
+    }
+
+    @Override
+    protected int getDefaultCacheSize() {
+        return 256;
+    }
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (this.skip) {
+            return;
+        }
+
+        final ConcurrentMap<String, List<File>> fileLists = new ConcurrentHashMap<>();
+
+        int reports = 0;
+        for (final MavenProject module : this.reactorProjects) {
+            final File buildDirectory = new File(module.getBuild().getDirectory());
+
+            final List<File> execFiles;
+            try {
+                execFiles = resolveFiles(new File(buildDirectory, this.execFileName));
+            } catch (final IOException e) {
+                throw new MojoExecutionException("Failed to resolve execution data files", e);
+            }
+
+            if (execFiles.isEmpty()) {
+                getLog().debug(format("Skipping module '%s'. No execution data found.", module.getArtifactId()));
+                continue;
+            }
+
+            final File xmlFile = new File(buildDirectory, this.xmlFileName);
+            getLog().info(format("Creating report for module '%s': %s", module.getArtifactId(), xmlFile));
+
+            final List<MavenProject> projects = new ArrayList<>();
+            projects.add(module);
+            projects.addAll(findDependencies(module));
+
+            try (final ReportSupport report = createReportSupport()) {
+                report.setFileListCache(fileLists);
+                applyChangedClasses(report, projects);
+
+                if (this.filterExecutionData) {
+                    report.filterExecutionData(projects, this.includes, this.excludes);
+                }
+                report.loadExecutionData(execFiles);
+
+                writeXmlReport(report, xmlFile, projects);
+            } catch (final IOException e) {
+                throw new MojoExecutionException(
+                        format("Failed to convert to XML for module '%s'", module.getArtifactId()), e);
+            }
+
+            reports++;
+        }
+
+        getLog().info(format("Created %s reports for %s modules", Integer.valueOf(reports),
+                Integer.valueOf(this.reactorProjects.size())));
+
+        final AnalysisCache cache = getAnalysisCache();
+        if (cache != null) {
+            getLog().debug("Analysis cache: " + cache);
+        }
+    }
+
+}
@@ -10,45 +10,25 @@
  *******************************************************************************/
 package de.dentrassi.maven.jacoco;
 
-import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
-import static org.apache.maven.artifact.Artifact.SCOPE_COMPILE;
-import static org.apache.maven.artifact.Artifact.SCOPE_PROVIDED;
-import static org.apache.maven.artifact.Artifact.SCOPE_RUNTIME;
-import static org.apache.maven.artifact.Artifact.SCOPE_TEST;
 import static org.apache.maven.plugins.annotations.LifecyclePhase.VERIFY;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.nio.file.Files;
-import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-
-import org.apache.maven.model.Dependency;
-import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
-import org.jacoco.report.IReportGroupVisitor;
-import org.jacoco.report.IReportVisitor;
-import org.w3c.dom.Document;
+import org.jacoco.core.JaCoCo;
 
 /**
  * Convert binary execution data to XML report including dependencies. <br>
@@ -58,95 +38,200 @@ import org.w3c.dom.Document;
  * tests in a module are responsible for testing classes in other modules.
  */
 @Mojo(defaultPhase = VERIFY, name = "xml", requiresProject = true, inheritByDefault = true, requiresDependencyResolution = ResolutionScope.TEST, threadSafe = true)
-public class XmlMojo extends AbstractMojo {
+public class XmlMojo extends AbstractReportMojo {
+
+    /**
+     * The formats writing the packages when streaming, only one of them can be
+     * used at a time.
+     */
+    private static final Set<ReportFormat> STREAMING_FORMATS = EnumSet.of(ReportFormat.XML,
+            ReportFormat.XML_SHARDS, ReportFormat.LCOV, ReportFormat.COBERTURA);
 
-    private final static String PROP_PREFIX = "jacoco.extras.";
+    /**
+     * The output XML file
+     */
+    @Parameter(property = PROP_PREFIX
+            + "xmlFile", defaultValue = "${project.build.directory}/jacoco.xml", required = true)
+    private File xmlFile;
 
     /**
-     * Allows to skip the execution
+     * The output formats of the report. <br>
+     * All formats are written from a single analysis of the classes. Possible
+     * values are <code>XML</code>, <code>XML_SHARDS</code>, <code>CSV</code>,
+     * <code>HTML</code>, <code>LCOV</code>, <code>COBERTURA</code> and
+     * <code>SUMMARY</code>, which logs a summary of the coverage.
+     *
+     * @since 0.1.7
      */
-    @Parameter(property = PROP_PREFIX + "skip", defaultValue = "false")
-    private boolean skip;
+    @Parameter(property = PROP_PREFIX + "formats", defaultValue = "XML")
+    private List<ReportFormat> formats;
 
     /**
-     * The jacoco execution data <br>
-     * If this file doesn't exist, execution of this plugin will be skipped
+     * The output directory of the <code>XML_SHARDS</code> format. <br>
+     * One XML report is written per bundle, and an index of all reports to
+     * <code>index.json</code>. The directory is cleared before writing the
+     * reports.
+     *
+     * @since 0.1.7
      */
     @Parameter(property = PROP_PREFIX
-            + "execFile", defaultValue = "${project.build.directory}/jacoco.exec", required = true)
-    private File execFile;
+            + "shardDirectory", defaultValue = "${project.build.directory}/jacoco-shards")
+    private File shardDirectory;
 
     /**
-     * The output XML file
+     * The maximum number of classes of a report of the <code>XML_SHARDS</code>
+     * format. <br>
+     * Bundles with more classes are split into one report per package. Zero
+     * or less never splits bundles.
+     *
+     * @since 0.1.7
+     */
+    @Parameter(property = PROP_PREFIX + "shardMaxClasses", defaultValue = "0")
+    private int shardMaxClasses;
+
+    /**
+     * The output CSV file, used by the <code>CSV</code> format.
+     *
+     * @since 0.1.7
+     */
+    @Parameter(property = PROP_PREFIX + "csvFile", defaultValue = "${project.build.directory}/jacoco.csv")
+    private File csvFile;
+
+    /**
+     * The output directory of the <code>HTML</code> format.
+     *
+     * @since 0.1.7
      */
     @Parameter(property = PROP_PREFIX
-            + "xmlFile", defaultValue = "${project.build.directory}/jacoco.xml", required = true)
-    private File xmlFile;
+            + "htmlDirectory", defaultValue = "${project.reporting.outputDirectory}/jacoco-extras")
+    private File htmlDirectory;
 
     /**
-     * The encoding of the source files
+     * The output file of the <code>LCOV</code> format.
+     *
+     * @since 0.1.7
      */
-    @Parameter(property = "project.build.sourceEncoding", defaultValue = "UTF-8")
-    private String sourceEncoding;
+    @Parameter(property = PROP_PREFIX + "lcovFile", defaultValue = "${project.build.directory}/lcov.info")
+    private File lcovFile;
 
     /**
-     * Include patterns. The default is to include everything.
+     * The output file of the <code>COBERTURA</code> format.
+     *
+     * @since 0.1.7
      */
-    @Parameter
-    private List<String> includes;
+    @Parameter(property = PROP_PREFIX + "coberturaFile", defaultValue = "${project.build.directory}/cobertura.xml")
+    private File coberturaFile;
 
     /**
-     * Exclude patterns. The default is to exclude nothing.
+     * The address of a running jacoco agent to dump the execution data of.
+     * <br>
+     * The agent must use the output mode <code>tcpserver</code>. Its
+     * execution data is read directly from the connection and merged with the
+     * execution data files, if any. By default no agent is contacted.
+     *
+     * @since 0.1.7
      */
-    @Parameter
-    private List<String> excludes;
+    @Parameter(property = PROP_PREFIX + "agentAddress")
+    private String agentAddress;
 
-    @Parameter(property = "project", readonly = true)
-    private MavenProject project;
+    /**
+     * The port of the agent configured by {@link #agentAddress}.
+     *
+     * @since 0.1.7
+     */
+    @Parameter(property = PROP_PREFIX + "agentPort", defaultValue = "6300")
+    private int agentPort = 6300;
 
-    @Parameter(property = "reactorProjects", readonly = true)
-    private List<MavenProject> reactorProjects;
+    /**
+     * Reset the execution data of the agent configured by
+     * {@link #agentAddress}, after it has been dumped.
+     *
+     * @since 0.1.7
+     */
+    @Parameter(property = PROP_PREFIX + "agentReset", defaultValue = "false")
+    private boolean agentReset;
 
     /**
-     * If the XML file should be pretty printed.
+     * The timeout, in milliseconds, of connecting to the agent configured by
+     * {@link #agentAddress} and of waiting for its execution data. <br>
+     * An agent which can't be reached, or doesn't answer, fails the build
+     * once the timeout expires. Zero waits forever.
      *
-     * @since 0.1.2
+     * @since 0.1.7
      */
-    @Parameter(property = PROP_PREFIX + "pretty", defaultValue = "true")
-    private boolean pretty = true;
+    @Parameter(property = PROP_PREFIX + "agentTimeout", defaultValue = "30000")
+    private int agentTimeout = 30000;
 
     /**
      * When pretty printing, if the original file should be deleted.
      *
      * @since 0.1.2
+     * @deprecated The XML is pretty printed while it is being written, there is
+     *             no original file anymore. This parameter is ignored.
      */
+    @Deprecated
     @Parameter(property = PROP_PREFIX + "deleteRaw", defaultValue = "true")
     private boolean deleteRaw = true;
 
     /**
-     * Scopes to consider for dependencies.
+     * Skip the analysis if the inputs didn't change since the last execution.
+     * <br>
+     * A fingerprint of the execution data, the analyzed class files and the
+     * configuration is written next to the XML file. When writing the
+     * <code>HTML</code> or <code>LCOV</code> format, the files of the source
+     * roots are part of the fingerprint too. If a later execution finds a
+     * matching fingerprint, the existing report is kept.
+     *
+     * @since 0.1.7
      */
-    @Parameter(property = PROP_PREFIX + "scopes", defaultValue = "compile,runtime,provided,test")
-    private String[] scopes = new String[] { SCOPE_COMPILE, SCOPE_RUNTIME, SCOPE_PROVIDED, SCOPE_TEST };
+    @Parameter(property = PROP_PREFIX + "upToDateCheck", defaultValue = "false")
+    private boolean upToDateCheck;
 
     /**
-     * Process transient dependencies.
+     * Record timing and memory metrics of the different phases and of each
+     * analyzed bundle. <br>
+     * The metrics are summarized in the log and written as JSON file next to
+     * the XML file, using the suffix {@code .metrics.json}. The memory metrics
+     * are approximate, they are taken from the used heap of the whole JVM.
+     *
+     * @since 0.1.7
      */
-    @Parameter(property = PROP_PREFIX + "transientDependencies", defaultValue = "true")
-    private boolean transientDependencies = true;
+    @Parameter(property = PROP_PREFIX + "metrics", defaultValue = "false")
+    private boolean metrics;
 
-    public void setTransientDependencies(final boolean transientDependencies) {
-        this.transientDependencies = transientDependencies;
+    public void setFormats(final List<ReportFormat> formats) {
+        this.formats = formats;
     }
 
-    public void setScopes(final String[] scopes) {
-        this.scopes = scopes;
+    public void setShardMaxClasses(final int shardMaxClasses) {
+        this.shardMaxClasses = shardMaxClasses;
     }
 
-    public void setPretty(final boolean pretty) {
-        this.pretty = pretty;
+    public void setAgentAddress(final String agentAddress) {
+        this.agentAddress = agentAddress;
     }
 
+    public void setAgentPort(final int agentPort) {
+        this.agentPort = agentPort;
+    }
+
+    public void setAgentReset(final boolean agentReset) {
+        this.agentReset = agentReset;
+    }
+
+    public void setAgentTimeout(final int agentTimeout) {
+        this.agentTimeout = agentTimeout;
+    }
+
+    public void setUpToDateCheck(final boolean upToDateCheck) {
+        this.upToDateCheck = upToDateCheck;
+    }
+
+    public void setMetrics(final boolean metrics) {
+        this.metrics = metrics;
+    }
+
+    @Deprecated
     public void setDeleteRaw(final boolean deleteRaw) {
         this.deleteRaw = deleteRaw;
     }
@@ -157,31 +242,88 @@ public class XmlMojo extends AbstractMojo {
             return;
         }
 
-        if (!this.execFile.isFile()) {
+        if (this.streaming) {
+            final Set<ReportFormat> formats = getFormats();
+            formats.remove(ReportFormat.SUMMARY);
+            if (formats.size() != 1 || !STREAMING_FORMATS.containsAll(formats)) {
+                throw new MojoExecutionException("Streaming requires exactly one of the formats " + STREAMING_FORMATS
+                        + ", which may be combined with " + ReportFormat.SUMMARY);
+            }
+        }
+
+        final List<File> execFiles = resolveExecFiles(this.execFile, this.execFiles);
+        if (execFiles.isEmpty() && this.agentAddress == null) {
             getLog().debug("Not running. No execution data found.");
             return;
         }
 
-        try {
-            this.xmlFile.getParentFile().mkdirs();
+        final Metrics metrics = this.metrics ? new Metrics() : null;
+
+        Metrics.Phase phase = startPhase(metrics, "resolve");
+        final List<MavenProject> projects = new ArrayList<>();
+        projects.add(this.project);
+        projects.addAll(findDependencies(this.project));
+        endPhase(phase);
+
+        final File fingerprintFile = new File(this.xmlFile.getParentFile(), this.xmlFile.getName() + ".fingerprint");
+        final String fingerprint;
+        // the execution data of an agent is never up to date
+        if (this.upToDateCheck && this.agentAddress == null) {
+            phase = startPhase(metrics, "fingerprint");
+            fingerprint = makeFingerprint(execFiles, projects);
+            endPhase(phase);
+            if (outputsExist() && fingerprint.equals(Fingerprint.read(fingerprintFile))) {
+                getLog().info("Report is up to date, skipping analysis: " + getXmlOutputFile(this.xmlFile));
+                return;
+            }
+        } else {
+            fingerprint = null;
+        }
+
+        try (final ReportSupport report = createReportSupport()) {
+            // the old fingerprint is no longer valid
+            Files.deleteIfExists(fingerprintFile.toPath());
 
-            final ReportSupport report = new ReportSupport(getLog());
-            report.loadExecutionData(this.execFile);
-            report.addXmlFormatter(this.xmlFile, "UTF-8");
+            report.setMetrics(metrics);
 
-            final IReportVisitor visitor = report.initRootVisitor();
-            final IReportGroupVisitor group = visitor.visitGroup("XML");
+            phase = startPhase(metrics, "load");
+            applyChangedClasses(report, projects);
+            if (this.filterExecutionData) {
+                report.filterExecutionData(projects, this.includes, this.excludes);
+            }
+            report.loadExecutionData(execFiles);
+            if (this.agentAddress != null) {
+                report.dumpExecutionData(this.agentAddress, this.agentPort, this.agentReset, this.agentTimeout);
+            }
+            if (phase != null) {
+                long bytes = 0;
+                for (final File execFile : execFiles) {
+                    bytes += execFile.length();
+                }
+                phase.add(report.getExecutionDataStore().getContents().size(), bytes);
+            }
+            endPhase(phase);
 
-            processProject(report, group, this.project);
+            phase = startPhase(metrics, "report");
+            addFormatters(report, projects);
+            writeReport(report, projects);
+            if (phase != null) {
+                phase.add(metrics.getBundleClasses(), metrics.getBundleBytes());
+            }
+            endPhase(phase);
 
-            for (final MavenProject dependency : findDependencies(this.scopes)) {
-                processProject(report, group, dependency);
+            final AnalysisCache cache = getAnalysisCache();
+            if (cache != null) {
+                getLog().debug("Analysis cache: " + cache);
             }
 
-            visitor.visitEnd();
+            if (metrics != null) {
+                metrics.log(getLog());
+                metrics.write(new File(this.xmlFile.getParentFile(), this.xmlFile.getName() + ".metrics.json"));
+            }
 
-            if (this.pretty) {
-                makePretty();
+            if (fingerprint != null) {
+                Fingerprint.write(fingerprintFile, fingerprint);
             }
 
         } catch (final IOException e) {
@@ -189,105 +331,161 @@ public class XmlMojo extends AbstractMojo {
         }
     }
 
-    private void processProject(final ReportSupport report, final IReportGroupVisitor group, final MavenProject project)
-            throws IOException {
-        report.processProject(group, project.getArtifactId(), project, this.includes, this.excludes,
-                this.sourceEncoding);
+    private Set<ReportFormat> getFormats() {
+        if (this.formats == null || this.formats.isEmpty()) {
+            return EnumSet.of(ReportFormat.XML);
+        }
+        return EnumSet.copyOf(this.formats);
     }
 
-    private void makePretty() throws MojoExecutionException {
-        try {
-            final TransformerFactory tf = TransformerFactory.newInstance();
-
-            final Transformer transformer = tf.newTransformer();
-            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-            transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-            transformer.setOutputProperty(OutputKeys.ENCODING, this.sourceEncoding);
-            transformer.setOutputProperty(OutputKeys.DOCTYPE_PUBLIC, "-//JACOCO//DTD Report 1.0//EN");
-            transformer.setOutputProperty(OutputKeys.DOCTYPE_SYSTEM, "report.dtd");
-
-            final Path tmp = this.xmlFile.toPath().getParent()
-                    .resolve("raw." + this.xmlFile.toPath().getFileName().toString());
-
-            Files.move(this.xmlFile.toPath(), tmp, REPLACE_EXISTING);
-
-            try (final InputStream in = new BufferedInputStream(Files.newInputStream(tmp));
-                    final OutputStream out = new BufferedOutputStream(Files.newOutputStream(this.xmlFile.toPath()));) {
-
-                final DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-                dbf.setValidating(false);
-                dbf.setExpandEntityReferences(false);
-                dbf.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-                final Document doc = dbf.newDocumentBuilder().parse(in);
-
-                final DOMSource source = new DOMSource(doc);
-                final StreamResult result = new StreamResult(out);
-
-                transformer.transform(source, result);
-            }
-
-            // we only delete this if we succeeded
-            if (this.deleteRaw) {
-                Files.deleteIfExists(tmp);
+    private void addFormatters(final ReportSupport report, final List<MavenProject> projects) throws IOException {
+        for (final ReportFormat format : getFormats()) {
+            switch (format) {
+            case XML:
+                addXmlFormatter(report, this.xmlFile);
+                break;
+            case XML_SHARDS:
+                addShardedXmlFormatter(report, this.shardDirectory, this.shardMaxClasses);
+                break;
+            case CSV:
+                this.csvFile.getParentFile().mkdirs();
+                report.addCsvFormatter(this.csvFile, "UTF-8");
+                break;
+            case HTML:
+                this.htmlDirectory.mkdirs();
+                report.addHtmlFormatter(this.htmlDirectory, "UTF-8", null, Locale.getDefault());
+                break;
+            case LCOV:
+                this.lcovFile.getParentFile().mkdirs();
+                report.addLcovFormatter(this.lcovFile);
+                break;
+            case COBERTURA:
+                this.coberturaFile.getParentFile().mkdirs();
+                report.addCoberturaFormatter(this.coberturaFile, getSourceRoots(projects));
+                break;
+            case SUMMARY:
+                report.addSummaryFormatter();
+                break;
             }
-
-        } catch (final Exception e) {
-            throw new MojoExecutionException("Failed to pretty print XML file", e);
         }
-
     }
 
-    private List<MavenProject> findDependencies(final String... scopes) {
-
-        final Set<String> knownDependencies = new HashSet<>();
-        final List<MavenProject> result = new LinkedList<>();
-
-        findDependencies(new HashSet<>(Arrays.asList(scopes)), result, knownDependencies,
-                this.project.getDependencies());
-
+    private static List<File> getSourceRoots(final List<MavenProject> projects) {
+        final List<File> result = new ArrayList<>();
+        for (final MavenProject project : projects) {
+            result.addAll(ReportSupport.getCompileSourceRoots(project));
+        }
         return result;
+    }
 
+    private boolean outputsExist() {
+        final Set<ReportFormat> formats = getFormats();
+        if (formats.contains(ReportFormat.XML) && !getXmlOutputFile(this.xmlFile).isFile()) {
+            return false;
+        }
+        if (formats.contains(ReportFormat.XML_SHARDS)
+                && !new File(this.shardDirectory, ShardedXmlFormatter.INDEX_FILE).isFile()) {
+            return false;
+        }
+        if (formats.contains(ReportFormat.CSV) && !this.csvFile.isFile()) {
+            return false;
+        }
+        if (formats.contains(ReportFormat.HTML) && !new File(this.htmlDirectory, "index.html").isFile()) {
+            return false;
+        }
+        if (formats.contains(ReportFormat.LCOV) && !this.lcovFile.isFile()) {
+            return false;
+        }
+        if (formats.contains(ReportFormat.COBERTURA) && !this.coberturaFile.isFile()) {
+            return false;
+        }
+        return true;
     }
 
-    private void findDependencies(final Set<String> scopes, final List<MavenProject> result,
-            final Set<String> knownDependencies, final List<Dependency> dependencies) {
+    private static Metrics.Phase startPhase(final Metrics metrics, final String name) {
+        return metrics != null ? metrics.startPhase(name) : null;
+    }
 
-        for (final Dependency dependency : dependencies) {
+    private static void endPhase(final Metrics.Phase phase) {
+        if (phase != null) {
+            phase.end();
+        }
+    }
 
-            if (!scopes.contains(dependency.getScope())) {
-                continue;
+    private String makeFingerprint(final List<File> execFiles, final List<MavenProject> projects)
+            throws MojoExecutionException {
+        try {
+            final Fingerprint result = new Fingerprint();
+
+            result.add(this.plugin != null ? this.plugin.getVersion() : null);
+            result.add(JaCoCo.VERSION);
+
+            result.add(this.xmlFile.getAbsolutePath());
+            result.addAll(getFormats());
+            result.add(this.shardDirectory != null ? this.shardDirectory.getAbsolutePath() : null);
+            result.add(Integer.valueOf(this.shardMaxClasses));
+            result.add(this.csvFile != null ? this.csvFile.getAbsolutePath() : null);
+            result.add(this.htmlDirectory != null ? this.htmlDirectory.getAbsolutePath() : null);
+            result.add(this.lcovFile != null ? this.lcovFile.getAbsolutePath() : null);
+            result.add(this.coberturaFile != null ? this.coberturaFile.getAbsolutePath() : null);
+            result.add(Boolean.valueOf(this.pretty));
+            result.add(getXmlOutputFile(this.xmlFile).getAbsolutePath());
+            result.add(this.sourceEncoding);
+            result.addAll(this.includes);
+            result.addAll(this.excludes);
+            result.addAll(Arrays.asList(this.scopes));
+            result.add(Boolean.valueOf(this.transientDependencies));
+            result.add(Boolean.valueOf(this.streaming));
+            result.add(Boolean.valueOf(this.filterExecutionData));
+            // the HTML report formats numbers using the default locale
+            result.add(Locale.getDefault());
+            if (this.changedClassesFile != null) {
+                result.addFile(this.changedClassesFile);
             }
 
-            final String key = toKey(dependency);
-            if (!knownDependencies.add(key)) {
-                continue;
+            result.add(Integer.valueOf(execFiles.size()));
+            for (final File execFile : execFiles) {
+                result.addFile(execFile);
             }
 
-            getLog().debug("Adding dependency - " + dependency.toString());
-            final MavenProject project = findProjectFromReactor(dependency);
-            if (project != null) {
-                result.add(project);
-                if (this.transientDependencies) {
-                    findDependencies(scopes, result, knownDependencies, project.getDependencies());
+            final FileFilter filter = new FileFilter(this.includes, this.excludes);
+            for (final MavenProject project : projects) {
+                result.add(project.getArtifactId());
+                final File classesDir = new File(project.getBuild().getOutputDirectory());
+                if (!classesDir.isDirectory()) {
+                    result.add(null);
+                    continue;
+                }
+                final List<File> files = filter.getFiles(classesDir);
+                result.add(Integer.valueOf(files.size()));
+                for (final File file : files) {
+                    result.addFile(file);
                 }
-            } else {
-                getLog().debug("  -> Unable to find in reactor");
             }
-        }
-    }
 
-    private static String toKey(final Dependency dependency) {
-        return dependency.getManagementKey() + dependency.getVersion();
-    }
-
-    private MavenProject findProjectFromReactor(final Dependency d) {
-        for (final MavenProject p : this.reactorProjects) {
-            if (p.getGroupId().equals(d.getGroupId()) && p.getArtifactId().equals(d.getArtifactId())
-                    && p.getVersion().equals(d.getVersion())) {
-                return p;
+            // the HTML report renders the source files, and LCOV refers to them
+            final Set<ReportFormat> formats = getFormats();
+            final List<File> sourceRoots = getSourceRoots(projects);
+            result.addAll(sourceRoots);
+            if (formats.contains(ReportFormat.HTML) || formats.contains(ReportFormat.LCOV)) {
+                final FileFilter sourceFilter = new FileFilter(null, null);
+                for (final File sourceRoot : sourceRoots) {
+                    if (!sourceRoot.isDirectory()) {
+                        result.add(null);
+                        continue;
+                    }
+                    final List<File> files = sourceFilter.getFiles(sourceRoot);
+                    result.add(Integer.valueOf(files.size()));
+                    for (final File file : files) {
+                        result.addFile(file);
+                    }
+                }
             }
+
+            return result.complete();
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Failed to create fingerprint of inputs", e);
         }
-        return null;
     }
 
 }